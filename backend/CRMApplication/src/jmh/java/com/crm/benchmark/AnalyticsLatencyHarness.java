@@ -0,0 +1,124 @@
+package com.crm.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end latency of the analytics dashboards under concurrent load, measured over HTTP against a running
+ * backend. To compare before and after, start the application from the commit before the analytics fan-out and
+ * from the current tree against the same database, and run this against each:
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench.main=com.crm.benchmark.AnalyticsLatencyHarness \
+ *     -Dbench.jvmArgs="-Dusername=admin -Dpassword=secret -Drole=admin -Dclients=32 -Drequests=5000"
+ * </pre>
+ *
+ * {@code -Dpath} picks the endpoint: {@code /api/admin/analytics} (default) or
+ * {@code /api/customers/{userId}/analytics}, where {@code {userId}} is replaced by the id the login returns.
+ * Reports exact p50/p90/p99/max and requests per second.
+ */
+public class AnalyticsLatencyHarness {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("base.url", "http://localhost:8080");
+        String path = System.getProperty("path", "/api/admin/analytics");
+        int clients = Integer.getInteger("clients", 32);
+        int requests = Integer.getInteger("requests", 2000);
+        int warmup = Integer.getInteger("warmup", 200);
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        ObjectMapper json = new ObjectMapper();
+        JsonNode login = login(http, json, baseUrl);
+        String token = login.get("token").asText();
+        URI uri = URI.create(baseUrl + path.replace("{userId}", login.get("userId").asText()));
+
+        System.out.println("GET " + uri + " with " + clients + " clients");
+        run(http, uri, token, clients, warmup);
+        long start = System.nanoTime();
+        long[] latencies = run(http, uri, token, clients, requests);
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("requests=%d throughput=%.1f/s p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n",
+                requests, requests * 1e9 / elapsed,
+                millis(latencies, 50), millis(latencies, 90), millis(latencies, 99),
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static JsonNode login(HttpClient http, ObjectMapper json, String baseUrl) throws Exception {
+        String body = json.writeValueAsString(Map.of(
+                "username", System.getProperty("username", "admin"),
+                "password", System.getProperty("password", "admin"),
+                "role", System.getProperty("role", "admin")));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with " + response.statusCode() + ": " + response.body());
+        }
+        return json.readTree(response.body());
+    }
+
+    // Each client sends its next request as soon as the previous one returns
+    private static long[] run(HttpClient http, URI uri, String token, int clients, int requests) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong failures = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            Future<?>[] workers = new Future<?>[clients];
+            for (int c = 0; c < clients; c++) {
+                workers[c] = pool.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        if (failures.get() > 0) {
+            System.err.println(failures.get() + " of " + requests + " requests failed");
+        }
+        return latencies;
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * percentile / 100.0) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
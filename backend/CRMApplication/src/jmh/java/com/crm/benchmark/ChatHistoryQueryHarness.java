@@ -0,0 +1,232 @@
+package com.crm.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chat history lookups over a large chat_messages table in MySQL: the old predicate on both participant
+ * orderings against the conversation_id lookup that uses idx_chat_conversation_ts_id, for the newest page and
+ * for a whole conversation. Prints EXPLAIN for each and exact p50/p99.
+ *
+ * <p>The table is a copy of chat_messages' columns and indexes (the sender and recipient indexes are the ones
+ * the foreign keys gave the old query), without the foreign keys, so it can be filled without users. It is
+ * seeded once to {@code -Drows} (10 million by default) by repeatedly doubling it with INSERT ... SELECT, and
+ * reused by later runs. Seeding 10M rows takes several minutes and about 2 GB of disk.
+ *
+ * <pre>
+ * docker compose up -d mysqldb
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench.main=com.crm.benchmark.ChatHistoryQueryHarness \
+ *     -Dbench.jvmArgs="-Djdbc.url=jdbc:mysql://localhost:3307/crm_bench?createDatabaseIfNotExist=true -Djdbc.user=root -Djdbc.password=root"
+ * </pre>
+ */
+public class ChatHistoryQueryHarness {
+
+    private static final String TABLE = "chat_messages_bench";
+    private static final int SEED_ROWS = 10_000;
+
+    private static final String CREATE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+            "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+            "sender_id BIGINT NOT NULL, " +
+            "recipient_id BIGINT NOT NULL, " +
+            "conversation_id VARCHAR(64), " +
+            "encrypted_message LONGTEXT NOT NULL, " +
+            "timestamp DATETIME(6), " +
+            "is_read BIT NOT NULL, " +
+            "KEY idx_bench_sender (sender_id), " +
+            "KEY idx_bench_recipient (recipient_id), " +
+            "KEY idx_bench_conversation_ts_id (conversation_id, timestamp, id))";
+
+    // Each pass copies the table with the participants moved to other users and the timestamps shifted
+    private static final String DOUBLE_SQL =
+            "INSERT INTO " + TABLE + " (sender_id, recipient_id, conversation_id, encrypted_message, timestamp, is_read) " +
+            "SELECT s, r, CONCAT(LEAST(s, r), ':', GREATEST(s, r)), encrypted_message, timestamp - INTERVAL ? SECOND, is_read " +
+            "FROM (SELECT (sender_id * 31 + ?) % ? + 1 AS s, (recipient_id * 17 + ?) % ? + 1 AS r, encrypted_message, timestamp, is_read " +
+            "      FROM " + TABLE + " ORDER BY id LIMIT ?) copy WHERE s <> r";
+
+    private static final String OLD_PAGE_SQL =
+            "SELECT id, sender_id, recipient_id, encrypted_message, timestamp FROM " + TABLE + " " +
+            "WHERE (sender_id = ? AND recipient_id = ?) OR (sender_id = ? AND recipient_id = ?) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String NEW_PAGE_SQL =
+            "SELECT id, sender_id, recipient_id, encrypted_message, timestamp FROM " + TABLE + " " +
+            "WHERE conversation_id = ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String OLD_HISTORY_SQL =
+            "SELECT id, sender_id, recipient_id, encrypted_message, timestamp FROM " + TABLE + " " +
+            "WHERE (sender_id = ? AND recipient_id = ?) OR (sender_id = ? AND recipient_id = ?) ORDER BY timestamp ASC";
+    private static final String NEW_HISTORY_SQL =
+            "SELECT id, sender_id, recipient_id, encrypted_message, timestamp FROM " + TABLE + " " +
+            "WHERE conversation_id = ? ORDER BY timestamp ASC, id ASC";
+
+    private interface Binder {
+        void bind(PreparedStatement statement, long low, long high) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("jdbc.url", "jdbc:mysql://localhost:3306/crm_bench?createDatabaseIfNotExist=true");
+        long rows = Long.getLong("rows", 10_000_000L);
+        int users = Integer.getInteger("users", 1000);
+        int queries = Integer.getInteger("queries", 500);
+        int pageSize = Integer.getInteger("page", 50);
+
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("jdbc.user", "root"), System.getProperty("jdbc.password", "root"))) {
+            seed(connection, rows, users);
+
+            Binder oldPage = (statement, low, high) -> {
+                bindPair(statement, low, high);
+                statement.setInt(5, pageSize);
+            };
+            Binder newPage = (statement, low, high) -> {
+                statement.setString(1, low + ":" + high);
+                statement.setInt(2, pageSize);
+            };
+            Binder oldHistory = ChatHistoryQueryHarness::bindPair;
+            Binder newHistory = (statement, low, high) -> statement.setString(1, low + ":" + high);
+
+            measure(connection, "old page", OLD_PAGE_SQL, oldPage, users, queries);
+            measure(connection, "new page", NEW_PAGE_SQL, newPage, users, queries);
+            measure(connection, "old history", OLD_HISTORY_SQL, oldHistory, users, queries);
+            measure(connection, "new history", NEW_HISTORY_SQL, newHistory, users, queries);
+        }
+    }
+
+    private static void bindPair(PreparedStatement statement, long low, long high) throws SQLException {
+        statement.setLong(1, low);
+        statement.setLong(2, high);
+        statement.setLong(3, high);
+        statement.setLong(4, low);
+    }
+
+    private static void seed(Connection connection, long rows, int users) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_SQL);
+        }
+        long count = count(connection);
+        if (count >= rows) {
+            System.out.println(TABLE + " already has " + count + " rows");
+            return;
+        }
+        if (count == 0) {
+            insertSeedRows(connection, users);
+            count = count(connection);
+        }
+        int pass = 0;
+        while (count < rows) {
+            pass++;
+            long start = System.nanoTime();
+            try (PreparedStatement statement = connection.prepareStatement(DOUBLE_SQL)) {
+                statement.setLong(1, count);
+                statement.setInt(2, pass);
+                statement.setInt(3, users);
+                statement.setInt(4, pass * 7);
+                statement.setInt(5, users);
+                statement.setLong(6, Math.min(count, rows - count));
+                statement.executeUpdate();
+            }
+            count = count(connection);
+            System.out.printf("seeded %d rows (%.1fs)%n", count, (System.nanoTime() - start) / 1e9);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + TABLE);
+        }
+    }
+
+    private static void insertSeedRows(Connection connection, int users) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // About the size of a short message once encrypted and Base64-encoded
+        String message = "x".repeat(96);
+        LocalDateTime now = LocalDateTime.now();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + TABLE + " (sender_id, recipient_id, conversation_id, encrypted_message, timestamp, is_read) " +
+                "VALUES (?, ?, ?, ?, ?, 0)")) {
+            for (int i = 0; i < SEED_ROWS; i++) {
+                long sender = random.nextInt(users) + 1;
+                long recipient = random.nextInt(users) + 1;
+                if (sender == recipient) {
+                    recipient = recipient % users + 1;
+                }
+                statement.setLong(1, sender);
+                statement.setLong(2, recipient);
+                statement.setString(3, Math.min(sender, recipient) + ":" + Math.max(sender, recipient));
+                statement.setString(4, message);
+                statement.setTimestamp(5, Timestamp.valueOf(now.minusSeconds(i)));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static long count(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private static void measure(Connection connection, String name, String sql, Binder binder,
+                                int users, int queries) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] latencies = new long[queries];
+        long returned = 0;
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            binder.bind(explain, 1, 2);
+            System.out.println(name + ":");
+            printRows(explain.executeQuery());
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < queries; i++) {
+                long a = random.nextInt(users) + 1;
+                long b = random.nextInt(users - 1) + 1;
+                if (b >= a) {
+                    b++;
+                }
+                binder.bind(statement, Math.min(a, b), Math.max(a, b));
+                long start = System.nanoTime();
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        result.getString(4);
+                        returned++;
+                    }
+                }
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("  %d queries, %.1f rows each, p50=%.2fms p99=%.2fms max=%.2fms%n", queries,
+                (double) returned / queries, percentileMillis(latencies, 50), percentileMillis(latencies, 99),
+                latencies[queries - 1] / 1e6);
+    }
+
+    private static void printRows(ResultSet result) throws SQLException {
+        try (result) {
+            ResultSetMetaData columns = result.getMetaData();
+            while (result.next()) {
+                StringBuilder line = new StringBuilder("  ");
+                for (int c = 1; c <= columns.getColumnCount(); c++) {
+                    line.append(columns.getColumnLabel(c)).append('=').append(result.getString(c)).append(' ');
+                }
+                System.out.println(line);
+            }
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
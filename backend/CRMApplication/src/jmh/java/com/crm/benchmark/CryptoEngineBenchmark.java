@@ -0,0 +1,117 @@
+package com.crm.benchmark;
+
+import com.crm.util.CryptoEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of one encrypt or decrypt call for a 100 byte chat message and a 64 KB file chunk, comparing the
+ * old per-call path (SHA-1 key derivation, {@code Cipher.getInstance} and AES/ECB for every call) with
+ * {@link CryptoEngine} (cached key, per-thread AES/GCM cipher).
+ *
+ * Run with {@code -prof gc} for allocations per call ({@code gc.alloc.rate.norm}):
+ * <pre>mvn -Pbenchmarks test-compile exec:exec -Dbench.args="CryptoEngineBenchmark -prof gc"</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoEngineBenchmark {
+
+    private static final String SECRET = "benchmark-chat-secret";
+
+    @Param({"100", "65536"})
+    private int size;
+
+    private SecretKey key;
+    private byte[] plaintext;
+    private byte[] legacyCiphertext;
+    private byte[] sealed;
+    private String text;
+    private String legacyText;
+    private String sealedText;
+
+    @Setup
+    public void setUp() throws Exception {
+        key = CryptoEngine.secretKey(SECRET);
+        plaintext = CryptoEngine.randomBytes(size);
+        legacyCiphertext = legacyCipher(Cipher.ENCRYPT_MODE).doFinal(plaintext);
+        sealed = CryptoEngine.seal(key, plaintext);
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        text = new String(chars);
+        legacyText = legacyEncryptString();
+        sealedText = CryptoEngine.sealString(key, text);
+    }
+
+    @Benchmark
+    public byte[] legacyEncrypt() throws Exception {
+        return legacyCipher(Cipher.ENCRYPT_MODE).doFinal(plaintext);
+    }
+
+    @Benchmark
+    public byte[] legacyDecrypt() throws Exception {
+        return legacyCipher(Cipher.DECRYPT_MODE).doFinal(legacyCiphertext);
+    }
+
+    @Benchmark
+    public byte[] seal() throws GeneralSecurityException {
+        return CryptoEngine.seal(key, plaintext);
+    }
+
+    @Benchmark
+    public byte[] open() throws GeneralSecurityException {
+        return CryptoEngine.open(key, sealed);
+    }
+
+    @Benchmark
+    public String legacyEncryptString() throws Exception {
+        byte[] encrypted = legacyCipher(Cipher.ENCRYPT_MODE).doFinal(text.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(encrypted);
+    }
+
+    @Benchmark
+    public String legacyDecryptString() throws Exception {
+        return new String(legacyCipher(Cipher.DECRYPT_MODE).doFinal(Base64.getDecoder().decode(legacyText)));
+    }
+
+    @Benchmark
+    public String sealString() throws GeneralSecurityException {
+        return CryptoEngine.sealString(key, text);
+    }
+
+    @Benchmark
+    public String openString() throws GeneralSecurityException {
+        return CryptoEngine.openString(key, sealedText);
+    }
+
+    // What CryptoUtil did on every call before CryptoEngine
+    private static Cipher legacyCipher(int mode) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(SECRET.getBytes(StandardCharsets.UTF_8));
+        SecretKeySpec legacyKey = new SecretKeySpec(Arrays.copyOf(digest, 16), "AES");
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(mode, legacyKey);
+        return cipher;
+    }
+}
@@ -0,0 +1,187 @@
+package com.crm.benchmark;
+
+import com.crm.util.CryptoEngine;
+import com.crm.util.SegmentedCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to store and to read back one file from disk, streamed through {@link SegmentedCipher} for files of
+ * 1 MB to 2 GB, and the old whole-file path (read into memory, AES/ECB in one call, write) for the sizes it can
+ * still hold. Memory is the point of the comparison: with {@code -prof gc} the streaming path allocates about
+ * one segment per call whatever the size, the old one several copies of the file.
+ *
+ * Files go under {@code -Dbench.dir} (the temp directory by default), which needs about three times the largest
+ * size free. The old path at 2 GB does not fit in a Java array at all, hence its smaller sizes.
+ *
+ * <pre>mvn -Pbenchmarks test-compile exec:exec -Dbench.args="FileStreamingBenchmark -prof gc"</pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class FileStreamingBenchmark {
+
+    private static final String PIN = "benchmark-pin";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @State(Scope.Benchmark)
+    public static class Streaming {
+
+        @Param({"1048576", "67108864", "1073741824", "2147483648"})
+        long size;
+
+        Path dir;
+        Path plaintext;
+        Path encrypted;
+        Path target;
+        SecretKey key;
+        byte[] salt;
+        SegmentedCipher.Header header;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory(Paths.get(System.getProperty("bench.dir", System.getProperty("java.io.tmpdir"))), "segmented");
+            plaintext = writeRandomFile(dir.resolve("plain"), size);
+            salt = CryptoEngine.randomBytes(16);
+            key = CryptoEngine.derivePinKey(PIN, salt);
+            encrypted = dir.resolve("encrypted");
+            encryptTo(this, encrypted);
+            try (FileChannel channel = FileChannel.open(encrypted, StandardOpenOption.READ)) {
+                header = SegmentedCipher.readHeader(channel);
+            }
+            target = dir.resolve("target");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteAll(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class WholeFile {
+
+        @Param({"1048576", "67108864", "268435456"})
+        int size;
+
+        Path dir;
+        Path plaintext;
+        Path encrypted;
+        Path target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dir = Files.createTempDirectory(Paths.get(System.getProperty("bench.dir", System.getProperty("java.io.tmpdir"))), "whole");
+            plaintext = writeRandomFile(dir.resolve("plain"), size);
+            encrypted = dir.resolve("encrypted");
+            Files.write(encrypted, legacyCipher(Cipher.ENCRYPT_MODE).doFinal(Files.readAllBytes(plaintext)));
+            target = dir.resolve("target");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteAll(dir);
+        }
+    }
+
+    @Benchmark
+    public long streamingUpload(Streaming state) throws IOException {
+        encryptTo(state, state.target);
+        return Files.size(state.target);
+    }
+
+    @Benchmark
+    public long streamingDownload(Streaming state) throws IOException {
+        try (FileChannel channel = FileChannel.open(state.encrypted, StandardOpenOption.READ);
+             InputStream in = SegmentedCipher.decrypt(channel, state.header, state.key, 0)) {
+            return drain(in);
+        }
+    }
+
+    @Benchmark
+    public long wholeFileUpload(WholeFile state) throws Exception {
+        byte[] data = Files.readAllBytes(state.plaintext);
+        Files.write(state.target, legacyCipher(Cipher.ENCRYPT_MODE).doFinal(data));
+        return Files.size(state.target);
+    }
+
+    @Benchmark
+    public long wholeFileDownload(WholeFile state) throws Exception {
+        byte[] data = legacyCipher(Cipher.DECRYPT_MODE).doFinal(Files.readAllBytes(state.encrypted));
+        return data.length;
+    }
+
+    private static void encryptTo(Streaming state, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(state.plaintext);
+             OutputStream out = SegmentedCipher.encrypt(Files.newOutputStream(file), state.key, state.salt)) {
+            in.transferTo(out);
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static Path writeRandomFile(Path file, long size) throws IOException {
+        // One random buffer repeated; contents do not change the cost of AES
+        byte[] chunk = CryptoEngine.randomBytes(BUFFER_SIZE);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += BUFFER_SIZE) {
+                out.write(chunk, 0, (int) Math.min(BUFFER_SIZE, size - written));
+            }
+        }
+        return file;
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // The key derivation and cipher of the old CryptoUtil.encrypt/decrypt
+    private static Cipher legacyCipher(int mode) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(PIN.getBytes(StandardCharsets.UTF_8));
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(mode, new SecretKeySpec(Arrays.copyOf(digest, 16), "AES"));
+        return cipher;
+    }
+}
@@ -0,0 +1,184 @@
+package com.crm.benchmark;
+
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * STOMP load against the /ws endpoint of a running backend: opens {@code -Dclients} WebSocket sessions (2000 by
+ * default), each subscribed to the private queue of one of the given users, and has them send chat messages to
+ * each other through /app/chat at {@code -Drate} messages per second in total. Every delivery is timed from send
+ * to receipt, so the numbers include the inbound channel, the chat write path and the outbound channel.
+ *
+ * <p>The users must exist, since the chat path looks both participants up; {@code -Dusers=2-101} spreads the
+ * clients over those ids. Sessions the server closes (send time or buffer limits, rejected channel tasks) are
+ * counted rather than reconnected.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench.main=com.crm.benchmark.StompLoadHarness \
+ *     -Dbench.jvmArgs="-Dusers=2-101 -Dclients=2000 -Drate=2000 -Dduration=60"
+ * </pre>
+ *
+ * Reports p50/p99/max delivery latency, deliveries per second, and connect failures and dropped sessions.
+ */
+public class StompLoadHarness {
+
+    private static final String PREFIX = "bench:";
+
+    private static final Latencies LATENCIES = new Latencies();
+    private static final AtomicLong SENT = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("url", "ws://localhost:8080/ws/websocket");
+        long[] users = userIds(System.getProperty("users", "2-101"));
+        int clients = Integer.getInteger("clients", 2000);
+        int rate = Integer.getInteger("rate", 2000);
+        int duration = Integer.getInteger("duration", 60);
+
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(2);
+        heartbeats.initialize();
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setTaskScheduler(heartbeats);
+
+        List<StompSession> sessions = new ArrayList<>();
+        long[] sessionUsers = new long[clients];
+        long connectFailures = 0;
+        for (int i = 0; i < clients; i++) {
+            long userId = users[i % users.length];
+            try {
+                StompSession session = stompClient.connectAsync(url, new ClientHandler()).get(10, TimeUnit.SECONDS);
+                session.subscribe("/user/" + userId + "/queue/messages", new ClientHandler());
+                sessionUsers[sessions.size()] = userId;
+                sessions.add(session);
+            } catch (Exception e) {
+                connectFailures++;
+            }
+        }
+        System.out.println("connected " + sessions.size() + " of " + clients + " clients to " + url);
+
+        // Senders are picked round-robin; each message goes to the next user along
+        ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+        long periodNanos = 1_000_000_000L / Math.max(1, rate);
+        AtomicLong next = new AtomicLong();
+        sender.scheduleAtFixedRate(() -> {
+            int index = (int) (next.getAndIncrement() % sessions.size());
+            StompSession session = sessions.get(index);
+            if (!session.isConnected()) {
+                return;
+            }
+            long from = sessionUsers[index];
+            long to = users[(Arrays.binarySearch(users, from) + 1) % users.length];
+            try {
+                session.send("/app/chat", Map.of(
+                        "senderId", from,
+                        "recipientId", to,
+                        "content", PREFIX + System.nanoTime()));
+                SENT.incrementAndGet();
+            } catch (Exception e) {
+                DROPPED.incrementAndGet();
+            }
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(duration);
+        sender.shutdownNow();
+        // Let in-flight messages arrive before reading the numbers
+        TimeUnit.SECONDS.sleep(2);
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = LATENCIES.sorted();
+        long connected = sessions.stream().filter(StompSession::isConnected).count();
+        System.out.printf("sent=%d delivered=%d (%.1f/s) p50=%.2fms p99=%.2fms max=%.2fms%n",
+                SENT.get(), sorted.length, sorted.length * 1e9 / elapsed,
+                percentileMillis(sorted, 50), percentileMillis(sorted, 99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+        System.out.printf("connect failures=%d sessions dropped=%d send errors=%d%n",
+                connectFailures, sessions.size() - connected, DROPPED.get());
+
+        for (StompSession session : sessions) {
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+        }
+        stompClient.stop();
+        heartbeats.shutdown();
+    }
+
+    private static long[] userIds(String range) {
+        String[] bounds = range.split("-");
+        long first = Long.parseLong(bounds[0].trim());
+        long last = bounds.length > 1 ? Long.parseLong(bounds[1].trim()) : first;
+        long[] ids = new long[(int) (last - first + 1)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private static final class ClientHandler extends StompSessionHandlerAdapter {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            Object content = ((Map<?, ?>) payload).get("content");
+            if (content instanceof String text && text.startsWith(PREFIX)) {
+                LATENCIES.add(System.nanoTime() - Long.parseLong(text.substring(PREFIX.length())));
+            }
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            System.err.println("STOMP error: " + exception.getMessage());
+        }
+    }
+
+    // Exact latencies; a few million longs is fine for a run of a minute or two
+    private static final class Latencies {
+        private long[] values = new long[1 << 16];
+        private int size;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
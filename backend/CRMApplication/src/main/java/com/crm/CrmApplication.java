@@ -3,8 +3,10 @@ package com.crm;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CrmApplication {
     public static void main(String[] args) {
         SpringApplication.run(CrmApplication.class, args);
@@ -0,0 +1,38 @@
+package com.crm.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AnalyticsConfig {
+
+    // Bounded pool for dashboard query fan-out; when it is saturated the caller runs the query itself.
+    // Every worker holds a database connection while it runs, so the pool must leave connections for everything else.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService analyticsExecutor(@Value("${analytics.executor.pool-size:4}") int poolSize,
+                                             @Value("${analytics.executor.queue-capacity:100}") int queueCapacity,
+                                             @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        if (poolSize >= connectionPoolSize) {
+            throw new IllegalStateException("analytics.executor.pool-size (" + poolSize + ") must be smaller than "
+                    + "spring.datasource.hikari.maximum-pool-size (" + connectionPoolSize + ")");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "analytics-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,33 @@
+package com.crm.config;
+
+import com.crm.repository.ChatMessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assigns the canonical conversation id to chat messages stored before the column existed.
+ * Runs in small batches so it never holds long locks; once every row is filled it is a single no-op update.
+ */
+@Component
+public class ChatConversationBackfill implements CommandLineRunner {
+
+    private static final int BATCH_SIZE = 5000;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Override
+    public void run(String... args) throws Exception {
+        long total = 0;
+        int updated;
+        do {
+            updated = chatMessageRepository.backfillConversationIds(BATCH_SIZE);
+            total += updated;
+        } while (updated == BATCH_SIZE);
+
+        if (total > 0) {
+            System.out.println("Backfilled conversation ids for " + total + " chat messages.");
+        }
+    }
+}
@@ -47,6 +47,13 @@ public class DataSeeder implements CommandLineRunner {
             System.out.println("Admin account already exists.");
         }
 
+        // Accounts from before join dates were recorded get the earliest known one, so paging can reach them
+        LocalDateTime earliest = userRepository.findEarliestJoinDate();
+        int backfilled = userRepository.backfillJoinDate(earliest != null ? earliest : LocalDateTime.now());
+        if (backfilled > 0) {
+            System.out.println("Set a join date on " + backfilled + " accounts that had none.");
+        }
+
         
             
         
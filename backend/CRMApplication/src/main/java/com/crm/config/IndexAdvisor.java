@@ -0,0 +1,160 @@
+package com.crm.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs EXPLAIN for the SQL behind every hot query and reports the ones that read a whole table (access type ALL,
+ * whether or not MySQL considered an index) as well as any statement that cannot be explained at all, since that
+ * usually means the SQL here no longer matches the schema. Enable it with index-advisor.enabled=true; with
+ * index-advisor.fail-on-full-scan=true any problem aborts startup.
+ *
+ * <p>The statements below are hand-written approximations for checking a live database. IndexAdvisorTest instead
+ * runs every repository query method, captures the SQL Hibernate actually sends and explains that.
+ */
+@Component
+@ConditionalOnProperty(name = "index-advisor.enabled", havingValue = "true")
+public class IndexAdvisor implements CommandLineRunner {
+
+    // One representative statement per repository method, with placeholder literals for the parameters
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("UserRepository.findByUsername",
+                "SELECT * FROM users WHERE username = 'admin'");
+        HOT_QUERIES.put("UserRepository.findByRole",
+                "SELECT * FROM users WHERE role = 'ROLE_CUSTOMER' ORDER BY join_date DESC, id DESC LIMIT 20");
+        HOT_QUERIES.put("UserRepository.findByRoleAndStatus",
+                "SELECT * FROM users WHERE role = 'ROLE_CUSTOMER' AND status = 'PENDING' LIMIT 20");
+        HOT_QUERIES.put("UserRepository.countByRoleAndStatus",
+                "SELECT COUNT(*) FROM users WHERE role = 'ROLE_CUSTOMER' AND status = 'ACTIVE'");
+        HOT_QUERIES.put("UserRepository.findByRoleBefore",
+                "SELECT * FROM users WHERE role = 'ROLE_CUSTOMER' AND (join_date < NOW() OR (join_date = NOW() AND id < 100)) "
+                        + "ORDER BY join_date DESC, id DESC LIMIT 21");
+        HOT_QUERIES.put("UserRepository.findByRoleAndStatusBefore",
+                "SELECT * FROM users WHERE role = 'ROLE_CUSTOMER' AND status = 'PENDING' "
+                        + "AND (join_date < NOW() OR (join_date = NOW() AND id < 100)) ORDER BY join_date DESC, id DESC LIMIT 21");
+        HOT_QUERIES.put("UserRepository.countCustomersByMonth",
+                "SELECT YEAR(join_date), MONTH(join_date), COUNT(id) FROM users WHERE role = 'ROLE_CUSTOMER' "
+                        + "GROUP BY YEAR(join_date), MONTH(join_date)");
+        HOT_QUERIES.put("UserRepository.findTopCustomersByInteractions",
+                "SELECT u.username, COUNT(i.id) FROM users u JOIN interaction i ON u.id = i.customer_id "
+                        + "WHERE u.role = 'ROLE_CUSTOMER' GROUP BY u.username ORDER BY COUNT(i.id) DESC LIMIT 10");
+        HOT_QUERIES.put("InteractionRepository.findByCustomer",
+                "SELECT * FROM interaction WHERE customer_id = 1 LIMIT 20");
+        HOT_QUERIES.put("InteractionRepository.findByCustomerAndType",
+                "SELECT * FROM interaction WHERE customer_id = 1 AND type = 'call' LIMIT 20");
+        HOT_QUERIES.put("InteractionRepository.countInteractionsPerDay",
+                "SELECT DATE(`date`), COUNT(*) FROM interaction WHERE customer_id = 1 AND `date` >= NOW() - INTERVAL 30 DAY GROUP BY DATE(`date`)");
+        HOT_QUERIES.put("InteractionRepository.findByCustomerAndDateBetween",
+                "SELECT * FROM interaction WHERE customer_id = 1 AND `date` BETWEEN NOW() - INTERVAL 30 DAY AND NOW()");
+        HOT_QUERIES.put("InteractionRepository.findByAdminStatus",
+                "SELECT * FROM interaction WHERE admin_status = 'PENDING' LIMIT 20");
+        HOT_QUERIES.put("InteractionRepository.findByAdminStatusBefore",
+                "SELECT * FROM interaction WHERE admin_status = 'PENDING' AND (`date` < NOW() OR (`date` = NOW() AND id < 100)) "
+                        + "ORDER BY `date` DESC, id DESC LIMIT 21");
+        HOT_QUERIES.put("InteractionRepository.findByCustomerContaining",
+                "SELECT * FROM interaction WHERE customer_id = 1 AND (subject LIKE '%call%' OR notes LIKE '%call%') LIMIT 20");
+        HOT_QUERIES.put("InteractionRepository.findByCustomerIdBefore",
+                "SELECT * FROM interaction WHERE customer_id = 1 AND (`date` < NOW() OR (`date` = NOW() AND id < 100)) "
+                        + "ORDER BY `date` DESC, id DESC LIMIT 21");
+        HOT_QUERIES.put("InteractionRepository.findByCustomerIdAndTypeBefore",
+                "SELECT * FROM interaction WHERE customer_id = 1 AND type = 'call' AND (`date` < NOW() OR (`date` = NOW() AND id < 100)) "
+                        + "ORDER BY `date` DESC, id DESC LIMIT 21");
+        HOT_QUERIES.put("ChatMessageRepository.findChatHistory",
+                "SELECT * FROM chat_messages WHERE conversation_id = '1:2' ORDER BY `timestamp`, id");
+        HOT_QUERIES.put("ChatMessageRepository.findChatPageBefore",
+                "SELECT * FROM chat_messages WHERE conversation_id = '1:2' AND (`timestamp` < NOW() OR (`timestamp` = NOW() AND id < 100)) "
+                        + "ORDER BY `timestamp` DESC, id DESC LIMIT 51");
+        HOT_QUERIES.put("ChatMessageRepository.findChatPageAfter",
+                "SELECT * FROM chat_messages WHERE conversation_id = '1:2' AND (`timestamp` > NOW() OR (`timestamp` = NOW() AND id > 100)) "
+                        + "ORDER BY `timestamp`, id LIMIT 51");
+        HOT_QUERIES.put("NotificationRepository.findFeedBefore",
+                "SELECT * FROM notifications WHERE user_id = 1 AND (created_at < NOW() OR (created_at = NOW() AND id < 100)) "
+                        + "ORDER BY created_at DESC, id DESC LIMIT 21");
+        HOT_QUERIES.put("NotificationRepository.countUnread",
+                "SELECT COUNT(*) FROM notifications WHERE user_id = 1 AND is_read = false");
+        HOT_QUERIES.put("CustomerCampaignRepository.findByCustomerId",
+                "SELECT * FROM customer_campaign WHERE customer_id = 1");
+        HOT_QUERIES.put("CustomerCampaignRepository.findByStatus",
+                "SELECT * FROM customer_campaign WHERE status = 'PENDING'");
+        HOT_QUERIES.put("CustomerCampaignRepository.countByCustomerIdAndStatus",
+                "SELECT COUNT(*) FROM customer_campaign WHERE customer_id = 1 AND status = 'APPROVED'");
+        HOT_QUERIES.put("SecureFileRepository.findByUser",
+                "SELECT * FROM secure_files WHERE user_id = 1");
+        HOT_QUERIES.put("MailOutboxDispatcher.claim",
+                "SELECT id FROM outbound_emails WHERE status = 'PENDING' AND next_attempt_at <= NOW() "
+                        + "ORDER BY priority, next_attempt_at, id LIMIT 200");
+        HOT_QUERIES.put("CampaignSendEngine.recipients",
+                "SELECT id, username, email FROM users WHERE role = 'ROLE_CUSTOMER' AND status = 'ACTIVE' AND id > 0 "
+                        + "AND email IS NOT NULL ORDER BY id LIMIT 1000");
+        HOT_QUERIES.put("EmailCampaignRepository.findByStatus",
+                "SELECT * FROM email_campaign WHERE status = 'scheduled'");
+        HOT_QUERIES.put("CampaignSendEngine.delivery",
+                "SELECT status, COUNT(*) FROM outbound_emails WHERE campaign_id = 1 GROUP BY status");
+    }
+
+    // Maintenance statements that touch every row by design; run once at startup, never on a request path
+    private static final Set<String> FULL_SCAN_ALLOWED = Set.of(
+            "UserRepository.findEarliestJoinDate",
+            "UserRepository.backfillJoinDate");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${index-advisor.fail-on-full-scan:false}")
+    private boolean failOnFullScan;
+
+    @Override
+    public void run(String... args) throws Exception {
+        List<String> problems = check();
+        if (problems.isEmpty()) {
+            System.out.println("Index advisor: all " + HOT_QUERIES.size() + " hot queries can use an index.");
+            return;
+        }
+        String report = "Index advisor: " + String.join("; ", problems);
+        if (failOnFullScan) {
+            throw new IllegalStateException(report);
+        }
+        System.err.println(report);
+    }
+
+    // Problems with the hand-written hot queries; empty when every one of them uses an index
+    public List<String> check() {
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<String, String> query : HOT_QUERIES.entrySet()) {
+            problems.addAll(explain(query.getKey(), query.getValue()));
+        }
+        return problems;
+    }
+
+    /**
+     * Explains one statement and describes what is wrong with its plan: every table it reads in full, or the
+     * error if it could not be explained. Names listed in {@link #FULL_SCAN_ALLOWED} may scan.
+     */
+    public List<String> explain(String name, String sql) {
+        List<String> problems = new ArrayList<>();
+        try {
+            for (Map<String, Object> row : jdbcTemplate.queryForList("EXPLAIN " + sql)) {
+                if ("ALL".equals(row.get("type")) && !FULL_SCAN_ALLOWED.contains(name)) {
+                    problems.add(name + " reads all of table " + row.get("table")
+                            + (row.get("possible_keys") != null ? " (ignoring " + row.get("possible_keys") + ")" : ""));
+                }
+            }
+        } catch (DataAccessException e) {
+            problems.add(name + " could not be explained: " + e.getMostSpecificCause().getMessage());
+        }
+        return problems;
+    }
+}
@@ -4,12 +4,22 @@ import com.crm.model.Settings;
 import com.crm.repository.SettingsRepository;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Holds an in-memory snapshot of the security settings so that hot paths such as
+ * token creation never have to query the database or parse JSON.
+ * The snapshot is loaded at startup, replaced once the admin's new settings have committed, and reloaded
+ * periodically so that changes saved on other nodes are picked up within {@code settings.reload-interval-ms}.
+ */
 @Component
 public class SessionSettings {
 
@@ -17,22 +27,78 @@ public class SessionSettings {
     private SettingsRepository settingsRepository;
 
     // Default to 5 minutes (300,000 ms)
-    private final long DEFAULT_TIMEOUT = 300000;
+    private static final long DEFAULT_TIMEOUT = 300000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(DEFAULT_TIMEOUT, System.currentTimeMillis());
+
+    @PostConstruct
+    public void load() {
+        try {
+            settingsRepository.findById(1L).ifPresent(this::refresh);
+        } catch (Exception e) {
+            System.err.println("Could not load system settings. Keeping the current snapshot. Error: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${settings.reload-interval-ms:60000}",
+               initialDelayString = "${settings.reload-interval-ms:60000}")
+    public void reload() {
+        load();
+    }
+
+    /**
+     * Publishes the given settings once the current transaction commits, so a rolled-back save never
+     * becomes visible; without a transaction they are published immediately.
+     */
+    public void refreshAfterCommit(Settings settings) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh(settings);
+                }
+            });
+        } else {
+            refresh(settings);
+        }
+    }
+
+    /**
+     * Re-parses the given settings and atomically publishes a new snapshot.
+     */
+    public void refresh(Settings settings) {
+        snapshot = new Snapshot(parseSessionTimeout(settings.getSecuritySettings()), System.currentTimeMillis());
+        refreshCount.incrementAndGet();
+    }
 
     public long getSessionTimeout() {
+        return snapshot.sessionTimeout();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    // Milliseconds since the current snapshot was published
+    public long getStalenessMillis() {
+        return System.currentTimeMillis() - snapshot.loadedAt();
+    }
+
+    private long parseSessionTimeout(String securitySettingsJson) {
+        if (securitySettingsJson == null || securitySettingsJson.isBlank()) {
+            return DEFAULT_TIMEOUT;
+        }
         try {
-            Optional<Settings> settingsOpt = settingsRepository.findById(1L);
-            if (settingsOpt.isPresent()) {
-                String securitySettingsJson = settingsOpt.get().getSecuritySettings();
-                ObjectMapper mapper = new ObjectMapper();
-                Map<String, Object> securityMap = mapper.readValue(securitySettingsJson, new TypeReference<>() {});
-                
-                Object timeoutObj = securityMap.get("sessionTimeout");
-                if (timeoutObj != null) {
-                    long timeoutInMinutes = Long.parseLong(String.valueOf(timeoutObj));
-                    if (timeoutInMinutes > 0) {
-                        return timeoutInMinutes * 60 * 1000; // Convert minutes to milliseconds
-                    }
+            Map<String, Object> securityMap = mapper.readValue(securitySettingsJson, new TypeReference<>() {});
+            Object timeoutObj = securityMap.get("sessionTimeout");
+            if (timeoutObj != null) {
+                long timeoutInMinutes = Long.parseLong(String.valueOf(timeoutObj));
+                if (timeoutInMinutes > 0) {
+                    return timeoutInMinutes * 60 * 1000; // Convert minutes to milliseconds
                 }
             }
         } catch (Exception e) {
@@ -41,4 +107,6 @@ public class SessionSettings {
         }
         return DEFAULT_TIMEOUT;
     }
-}
\ No newline at end of file
+
+    private record Snapshot(long sessionTimeout, long loadedAt) {}
+}
@@ -0,0 +1,154 @@
+package com.crm.config;
+
+import com.crm.util.LatencyHistogram;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instruments the STOMP channel executors and WebSocket sessions. Each channel task is timed from the moment
+ * it is queued until it finishes, which for the outbound channel is the server-side delivery latency.
+ * Sessions closed for exceeding the send time or buffer limit are counted as evicted slow consumers.
+ *
+ * <p>When a channel's queue is full the message is dropped and the session it came from or was going to is
+ * closed, so one flooding or stalled client cannot hold up the threads that serve everyone else.
+ */
+@Component
+public class WebSocketMetrics {
+
+    private final Map<String, ThreadPoolTaskExecutor> executors = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong evictedSessions = new AtomicLong();
+    private final AtomicLong rejectedMessages = new AtomicLong();
+    // Open sessions by id, the same id STOMP puts in the simpSessionId header
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    public synchronized ThreadPoolTaskExecutor track(String channel, ThreadPoolTaskExecutor executor) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        executor.setTaskDecorator(timing(histogram));
+        executors.put(channel, executor);
+        latencies.put(channel, histogram);
+        return executor;
+    }
+
+    public WebSocketHandlerDecoratorFactory sessionTracker() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                activeSessions.incrementAndGet();
+                sessions.put(session.getId(), session);
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                activeSessions.decrementAndGet();
+                sessions.remove(session.getId());
+                // ConcurrentWebSocketSessionDecorator closes slow sessions with this status
+                if (closeStatus.getCode() == CloseStatus.SESSION_NOT_RELIABLE.getCode()) {
+                    evictedSessions.incrementAndGet();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Drops a message the channel has no room for and closes its session as not reliable, which also counts
+     * it as evicted. Nothing is thrown, so the broker carries on delivering to other subscribers.
+     */
+    public RejectedExecutionHandler dropAndClose(String channel) {
+        return (task, executor) -> {
+            rejectedMessages.incrementAndGet();
+            Runnable rejected = task instanceof TimedTask timed ? timed.task : task;
+            if (!(rejected instanceof MessageHandlingRunnable handling)) {
+                return;
+            }
+            Message<?> message = handling.getMessage();
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            WebSocketSession session = sessionId != null ? sessions.get(sessionId) : null;
+            if (session == null || !session.isOpen()) {
+                return;
+            }
+            System.err.println("WebSocket " + channel + " channel is full; closing session " + sessionId);
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                System.err.println("Could not close WebSocket session " + sessionId + ": " + e.getMessage());
+            }
+        };
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public long getEvictedSessions() {
+        return evictedSessions.get();
+    }
+
+    public long getRejectedMessages() {
+        return rejectedMessages.get();
+    }
+
+    /**
+     * Per channel: queue depth, active threads, processed tasks and p50/p99 latency in microseconds.
+     */
+    public synchronized Map<String, Object> getChannelStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, ThreadPoolTaskExecutor> entry : executors.entrySet()) {
+            ThreadPoolTaskExecutor executor = entry.getValue();
+            LatencyHistogram histogram = latencies.get(entry.getKey());
+            Map<String, Object> channel = new LinkedHashMap<>();
+            channel.put("queueDepth", executor.getQueueSize());
+            channel.put("activeThreads", executor.getActiveCount());
+            channel.put("processed", histogram.getCount());
+            channel.put("p50Micros", histogram.percentileMicros(50));
+            channel.put("p99Micros", histogram.percentileMicros(99));
+            stats.put(entry.getKey(), channel);
+        }
+        return stats;
+    }
+
+    private static TaskDecorator timing(LatencyHistogram histogram) {
+        return task -> new TimedTask(task, histogram);
+    }
+
+    // Keeps the channel's task reachable so a rejected one can still be traced to its session
+    private static final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final LatencyHistogram histogram;
+        private final long queuedAt = System.nanoTime();
+
+        TimedTask(Runnable task, LatencyHistogram histogram) {
+            this.task = task;
+            this.histogram = histogram;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                histogram.record(System.nanoTime() - queuedAt);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.crm.controller;
 
+import com.crm.dto.CampaignDeliveryDTO;
+import com.crm.dto.CursorPage;
 import com.crm.model.CustomerCampaign;
 import com.crm.model.EmailCampaign;
 import com.crm.model.Interaction;
@@ -25,6 +27,10 @@ public class AdminController {
     @Autowired
     private AdminService adminService;
 
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, 100));
+    }
+
     @GetMapping("/")
     public String home() {
         return "Welcome to the Admin Dashboard API";
@@ -37,6 +43,13 @@ public class AdminController {
         return ResponseEntity.ok(customers);
     }
 
+    @GetMapping("/customers/scroll")
+    public ResponseEntity<CursorPage<User>> scrollCustomers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(adminService.scrollCustomers(cursor, clampPageSize(size)));
+    }
+
     @PostMapping("/customers")
     public ResponseEntity<User> addCustomer(@RequestBody User customer) {
         User newCustomer = adminService.addCustomer(customer);
@@ -62,6 +75,13 @@ public class AdminController {
         return ResponseEntity.ok(pendingCustomers);
     }
 
+    @GetMapping("/customers/pending/scroll")
+    public ResponseEntity<CursorPage<User>> scrollPendingCustomers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(adminService.scrollPendingCustomers(cursor, clampPageSize(size)));
+    }
+
     @PutMapping("/customers/{id}/approve")
     public ResponseEntity<User> approveCustomer(@PathVariable Long id) {
         User approvedCustomer = adminService.approveCustomer(id);
@@ -81,6 +101,13 @@ public class AdminController {
         return ResponseEntity.ok(pendingInteractions);
     }
 
+    @GetMapping("/interactions/pending/scroll")
+    public ResponseEntity<CursorPage<Interaction>> scrollPendingInteractions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(adminService.scrollPendingInteractions(cursor, clampPageSize(size)));
+    }
+
     @PutMapping("/interactions/{id}/status")
     public ResponseEntity<Interaction> updateInteractionStatus(
             @PathVariable Long id,
@@ -118,6 +145,16 @@ public class AdminController {
         return ResponseEntity.ok(updatedCampaign);
     }
 
+    @PostMapping("/campaigns/{id}/send")
+    public ResponseEntity<EmailCampaign> sendCampaign(@PathVariable Long id) {
+        return ResponseEntity.accepted().body(adminService.sendCampaign(id));
+    }
+
+    @GetMapping("/campaigns/{id}/delivery")
+    public ResponseEntity<CampaignDeliveryDTO> getCampaignDelivery(@PathVariable Long id) {
+        return ResponseEntity.ok(adminService.getCampaignDelivery(id));
+    }
+
     @DeleteMapping("/campaigns/{id}")
     public ResponseEntity<Void> deleteCampaign(@PathVariable Long id) {
         adminService.deleteCampaign(id);
@@ -173,4 +210,9 @@ public class AdminController {
         Settings updatedSettings = adminService.updateSystemSettings(settings);
         return ResponseEntity.ok(updatedSettings);
     }
+
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getSystemMetrics() {
+        return ResponseEntity.ok(adminService.getSystemMetrics());
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.crm.controller;
 
+import com.crm.dto.ChatHistoryPage;
 import com.crm.dto.ChatMessageDTO;
 import com.crm.model.ChatMessage;
 import com.crm.service.ChatService;
@@ -12,6 +13,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -32,6 +34,17 @@ public class ChatController {
         return ResponseEntity.ok(history);
     }
     
+    @GetMapping("/api/chat/history/{recipientId}/page")
+    public ResponseEntity<ChatHistoryPage> getChatHistoryPage(
+            @PathVariable Long recipientId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        ChatHistoryPage page = chatService.getChatHistoryPage(userDetails.getUsername(), recipientId, before, after, clampPageSize(size));
+        return ResponseEntity.ok(page);
+    }
+
     // New Endpoint for Admin
     @GetMapping("/api/admin/chat/history/{customerId}")
     public ResponseEntity<List<ChatMessageDTO>> getAdminChatHistory(@PathVariable Long customerId, @AuthenticationPrincipal UserDetails userDetails) {
@@ -39,4 +52,19 @@ public class ChatController {
         List<ChatMessageDTO> history = chatService.getChatHistory(userDetails.getUsername(), customerId);
         return ResponseEntity.ok(history);
     }
+
+    @GetMapping("/api/admin/chat/history/{customerId}/page")
+    public ResponseEntity<ChatHistoryPage> getAdminChatHistoryPage(
+            @PathVariable Long customerId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        ChatHistoryPage page = chatService.getChatHistoryPage(userDetails.getUsername(), customerId, before, after, clampPageSize(size));
+        return ResponseEntity.ok(page);
+    }
+
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, 200));
+    }
 }
\ No newline at end of file
@@ -1,10 +1,14 @@
 package com.crm.controller;
 
+import com.crm.dto.CursorPage;
+import com.crm.dto.NotificationDTO;
 import com.crm.model.CustomerCampaign;
 import com.crm.model.EmailCampaign;
 import com.crm.model.Interaction;
 import com.crm.model.User;
+import com.crm.security.AuthenticatedUser;
 import com.crm.service.CustomerService;
+import com.crm.service.NotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -28,9 +32,15 @@ public class CustomerController {
     @Autowired
     private CustomerService customerService;
 
+    @Autowired
+    private NotificationService notificationService;
+
     private void checkAccess(Long requestedId, UserDetails userDetails) {
-        User currentUser = customerService.findUserByUsername(userDetails.getUsername());
-        if (!Objects.equals(currentUser.getId(), requestedId)) {
+        // The principal built by the JWT filter already carries the user id, so no lookup is needed
+        Long currentUserId = userDetails instanceof AuthenticatedUser authenticatedUser
+                ? authenticatedUser.getId()
+                : customerService.findUserByUsername(userDetails.getUsername()).getId();
+        if (!Objects.equals(currentUserId, requestedId)) {
             throw new AccessDeniedException("You are not authorized to access this resource.");
         }
     }
@@ -83,6 +93,19 @@ public class CustomerController {
         return ResponseEntity.ok(interactions);
     }
 
+    @GetMapping("/{id}/interactions/scroll")
+    public ResponseEntity<CursorPage<Interaction>> scrollCustomerInteractions(
+            @PathVariable Long id,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        checkAccess(id, userDetails);
+        int pageSize = Math.max(1, Math.min(size, 100));
+        return ResponseEntity.ok(customerService.scrollInteractionsForCustomer(id, type, cursor, pageSize));
+    }
+
     @PostMapping("/{id}/interactions")
     public ResponseEntity<Interaction> addInteraction(
             @PathVariable Long id,
@@ -145,4 +168,36 @@ public class CustomerController {
         List<CustomerCampaign> campaigns = customerService.getSubmittedCampaigns(id);
         return ResponseEntity.ok(campaigns);
     }
-}
\ No newline at end of file
+
+    // == Notification Endpoints ==
+    @GetMapping("/{id}/notifications")
+    public ResponseEntity<CursorPage<NotificationDTO>> getNotifications(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        checkAccess(id, userDetails);
+        int pageSize = Math.max(1, Math.min(size, 100));
+        return ResponseEntity.ok(notificationService.getFeed(id, cursor, pageSize));
+    }
+
+    @GetMapping("/{id}/notifications/unread-count")
+    public ResponseEntity<Map<String, Long>> getUnreadNotificationCount(@PathVariable Long id, @AuthenticationPrincipal UserDetails userDetails) {
+        checkAccess(id, userDetails);
+        return ResponseEntity.ok(Map.of("unread", notificationService.getUnreadCount(id)));
+    }
+
+    // Body {"ids": [...]} marks those notifications; an empty body marks all of them
+    @PutMapping("/{id}/notifications/read")
+    public ResponseEntity<Map<String, Long>> markNotificationsRead(
+            @PathVariable Long id,
+            @RequestBody(required = false) Map<String, List<Long>> body,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        checkAccess(id, userDetails);
+        List<Long> ids = body == null ? null : body.get("ids");
+        long updated = notificationService.markRead(id, ids);
+        return ResponseEntity.ok(Map.of("updated", updated, "unread", notificationService.getUnreadCount(id)));
+    }
+}
@@ -1,13 +1,22 @@
 package com.crm.controller;
 
 import com.crm.dto.SecureFileDTO;
+import com.crm.dto.SecureFileDownload;
 import com.crm.service.FileStorageService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -33,16 +42,80 @@ public class SecureFileController {
         return ResponseEntity.ok(fileStorageService.getFilesForUser());
     }
 
+    /**
+     * Streams the decrypted file. For files in the segmented format a single {@code Range} is honoured with
+     * 206 Partial Content, so large downloads can resume; only the segments covering the range are decrypted.
+     */
     @PostMapping("/download/{fileId}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable Long fileId, @RequestBody Map<String, String> payload) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(
+            @PathVariable Long fileId,
+            @RequestBody Map<String, String> payload,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
+        SecureFileDownload download;
         try {
-            String pin = payload.get("pin");
-            Resource resource = fileStorageService.downloadFile(fileId, pin);
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+            download = fileStorageService.downloadFile(fileId, payload.get("pin"));
         } catch (Exception e) {
-            return ResponseEntity.status(401).build(); 
+            return ResponseEntity.status(401).build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + download.getFileName() + "\"");
+        headers.setContentType(mediaTypeOf(download.getFileType()));
+        if (!download.isRangeSupported()) {
+            StreamingResponseBody body = out -> copy(download, 0, Long.MAX_VALUE, out);
+            return ResponseEntity.ok().headers(headers).body(body);
+        }
+
+        long length = download.getContentLength();
+        headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            headers.setContentLength(length);
+            StreamingResponseBody body = out -> copy(download, 0, length, out);
+            return ResponseEntity.ok().headers(headers).body(body);
+        }
+
+        HttpRange range;
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            if (ranges.size() != 1 || length == 0) {
+                throw new IllegalArgumentException("Only a single range is supported");
+            }
+            range = ranges.get(0);
+            range.getRangeStart(length); // validates the range against the length
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+        }
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+        headers.add(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        headers.setContentLength(end - start + 1);
+        StreamingResponseBody body = out -> copy(download, start, end - start + 1, out);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(body);
+    }
+
+    private static MediaType mediaTypeOf(String fileType) {
+        try {
+            return fileType == null ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(fileType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    // Decrypts on the fly from the encrypted file into the response; nothing is buffered or written to disk
+    private static void copy(SecureFileDownload download, long offset, long count, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = count;
+        try (InputStream in = download.openStream(offset)) {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.crm.dto;
+
+public class CampaignDeliveryDTO {
+    private Long campaignId;
+    private String status;
+    private Integer recipients;
+    private long pending;
+    private long delivered;
+    private long failed;
+
+    public CampaignDeliveryDTO() {}
+
+    public CampaignDeliveryDTO(Long campaignId, String status, Integer recipients, long pending, long delivered, long failed) {
+        this.campaignId = campaignId;
+        this.status = status;
+        this.recipients = recipients;
+        this.pending = pending;
+        this.delivered = delivered;
+        this.failed = failed;
+    }
+
+    // Getters and Setters
+    public Long getCampaignId() { return campaignId; }
+    public void setCampaignId(Long campaignId) { this.campaignId = campaignId; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public Integer getRecipients() { return recipients; }
+    public void setRecipients(Integer recipients) { this.recipients = recipients; }
+    public long getPending() { return pending; }
+    public void setPending(long pending) { this.pending = pending; }
+    public long getDelivered() { return delivered; }
+    public void setDelivered(long delivered) { this.delivered = delivered; }
+    public long getFailed() { return failed; }
+    public void setFailed(long failed) { this.failed = failed; }
+}
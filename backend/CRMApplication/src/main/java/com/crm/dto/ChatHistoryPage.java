@@ -0,0 +1,23 @@
+package com.crm.dto;
+
+import java.util.List;
+
+public class ChatHistoryPage {
+    private List<ChatMessageDTO> messages; // oldest first
+    private String olderCursor; // pass as 'before' to scroll back; null when the start of the chat is reached
+    private String newerCursor; // pass as 'after' to fetch messages newer than this page
+
+    public ChatHistoryPage(List<ChatMessageDTO> messages, String olderCursor, String newerCursor) {
+        this.messages = messages;
+        this.olderCursor = olderCursor;
+        this.newerCursor = newerCursor;
+    }
+
+    // Getters and Setters
+    public List<ChatMessageDTO> getMessages() { return messages; }
+    public void setMessages(List<ChatMessageDTO> messages) { this.messages = messages; }
+    public String getOlderCursor() { return olderCursor; }
+    public void setOlderCursor(String olderCursor) { this.olderCursor = olderCursor; }
+    public String getNewerCursor() { return newerCursor; }
+    public void setNewerCursor(String newerCursor) { this.newerCursor = newerCursor; }
+}
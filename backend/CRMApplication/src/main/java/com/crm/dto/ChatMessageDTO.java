@@ -1,8 +1,13 @@
 package com.crm.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
 import java.time.LocalDateTime;
 
 public class ChatMessageDTO {
+    // Sent as a string: generated ids are larger than browsers can hold exactly as numbers
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
     private Long senderId;
     private Long recipientId;
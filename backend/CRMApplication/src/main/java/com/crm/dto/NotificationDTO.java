@@ -0,0 +1,29 @@
+package com.crm.dto;
+
+import java.time.LocalDateTime;
+
+public class NotificationDTO {
+    private Long id;
+    private String message;
+    private boolean read;
+    private LocalDateTime createdAt;
+
+    public NotificationDTO() {}
+
+    public NotificationDTO(Long id, String message, boolean read, LocalDateTime createdAt) {
+        this.id = id;
+        this.message = message;
+        this.read = read;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public boolean isRead() { return read; }
+    public void setRead(boolean read) { this.read = read; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,48 @@
+package com.crm.dto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A verified download: the PIN has been checked and the decrypted content can be streamed on demand.
+ * Nothing is decrypted until {@link #openStream(long)} is called.
+ */
+public class SecureFileDownload {
+
+    @FunctionalInterface
+    public interface ContentOpener {
+        InputStream open(long offset) throws IOException;
+    }
+
+    private final String fileName;
+    private final String fileType;
+    private final long contentLength; // -1 when unknown
+    private final ContentOpener opener;
+
+    public SecureFileDownload(String fileName, String fileType, long contentLength, ContentOpener opener) {
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.contentLength = contentLength;
+        this.opener = opener;
+    }
+
+    /**
+     * Opens the plaintext at {@code offset}. Offsets other than 0 require {@link #isRangeSupported()}.
+     */
+    public InputStream openStream(long offset) throws IOException {
+        if (offset != 0 && !isRangeSupported()) {
+            throw new IllegalStateException("Range reads are not supported for " + fileName);
+        }
+        return opener.open(offset);
+    }
+
+    // Only segmented files know their plaintext length and can seek
+    public boolean isRangeSupported() {
+        return contentLength >= 0;
+    }
+
+    // Getters
+    public String getFileName() { return fileName; }
+    public String getFileType() { return fileType; }
+    public long getContentLength() { return contentLength; }
+}
@@ -0,0 +1,11 @@
+package com.crm.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class CampaignNotEditableException extends RuntimeException {
+    public CampaignNotEditableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.crm.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidCampaignException extends IllegalArgumentException {
+    public InvalidCampaignException(String message) {
+        super(message);
+    }
+}
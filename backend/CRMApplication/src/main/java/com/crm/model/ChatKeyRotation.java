@@ -0,0 +1,39 @@
+package com.crm.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+// Progress of re-encrypting chat messages to one key, shared by every node; written only by ChatKeyRotationJob
+@Entity
+@Table(name = "chat_key_rotation")
+public class ChatKeyRotation {
+
+    @Id
+    private Integer keyId;
+
+    // Messages up to this id have been looked at
+    @Column(nullable = false)
+    private long lastId;
+    @Column(nullable = false)
+    private boolean finished;
+
+    // Which node may run the next batch
+    @Column(length = 64)
+    private String leaseOwner;
+    private LocalDateTime leaseUntil;
+
+    // Getters and Setters
+    public Integer getKeyId() { return keyId; }
+    public void setKeyId(Integer keyId) { this.keyId = keyId; }
+    public long getLastId() { return lastId; }
+    public void setLastId(long lastId) { this.lastId = lastId; }
+    public boolean isFinished() { return finished; }
+    public void setFinished(boolean finished) { this.finished = finished; }
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    public LocalDateTime getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(LocalDateTime leaseUntil) { this.leaseUntil = leaseUntil; }
+}
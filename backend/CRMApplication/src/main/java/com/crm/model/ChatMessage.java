@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+    @Index(name = "idx_chat_conversation_ts_id", columnList = "conversationId, timestamp, id")
+})
 public class ChatMessage {
 
     @Id
@@ -19,6 +21,10 @@ public class ChatMessage {
     @JoinColumn(name = "recipient_id", nullable = false)
     private User recipient;
 
+    // "lowId:highId" of the two participants, identical for both directions of a conversation
+    @Column(length = 64)
+    private String conversationId;
+
     @Lob // Use Lob for potentially long encrypted messages
     @Column(nullable = false)
     private String encryptedMessage;
@@ -30,6 +36,11 @@ public class ChatMessage {
     @PrePersist
     protected void onCreate() {
         timestamp = LocalDateTime.now();
+        conversationId = conversationKey(sender.getId(), recipient.getId());
+    }
+
+    public static String conversationKey(Long userId, Long otherUserId) {
+        return Math.min(userId, otherUserId) + ":" + Math.max(userId, otherUserId);
     }
 
     // Getters and Setters
@@ -39,6 +50,8 @@ public class ChatMessage {
     public void setSender(User sender) { this.sender = sender; }
     public User getRecipient() { return recipient; }
     public void setRecipient(User recipient) { this.recipient = recipient; }
+    public String getConversationId() { return conversationId; }
+    public void setConversationId(String conversationId) { this.conversationId = conversationId; }
     public String getEncryptedMessage() { return encryptedMessage; }
     public void setEncryptedMessage(String encryptedMessage) { this.encryptedMessage = encryptedMessage; }
     public LocalDateTime getTimestamp() { return timestamp; }
@@ -4,6 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_customer_campaign_customer_status", columnList = "customer_id, status"),
+    @Index(name = "idx_customer_campaign_status", columnList = "status")
+})
 public class CustomerCampaign {
 
     @Id
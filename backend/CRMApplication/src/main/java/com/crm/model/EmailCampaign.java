@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_email_campaign_status_scheduled", columnList = "status, scheduledAt")
+})
 public class EmailCampaign {
 
     @Id
@@ -12,12 +15,27 @@ public class EmailCampaign {
     
     private String name;
     private String subject;
-    private String status; // e.g., 'draft', 'sent', 'scheduled'
+    private String status; // e.g., 'draft', 'sending', 'sent', 'scheduled'
+    @Lob
+    private String body; // HTML with {{username}} and {{email}} placeholders
     private Integer recipients;
     private Integer openRate;
     private Integer clickRate;
     private LocalDateTime createdAt;
     private LocalDateTime sentAt;
+    private LocalDateTime scheduledAt;
+
+    // Send progress: users up to this id have an outbound email queued; recipientsQueued once all of them do
+    private Long lastRecipientId;
+    private boolean recipientsQueued;
+    private Integer deliveredCount;
+    private Integer failedCount;
+
+    // Which node may act on the campaign right now; written only through CampaignLease, never by JPA
+    @Column(insertable = false, updatable = false, length = 64)
+    private String leaseOwner;
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime leaseUntil;
     
     // Getters and Setters
     public Long getId() { return id; }
@@ -28,6 +46,8 @@ public class EmailCampaign {
     public void setSubject(String subject) { this.subject = subject; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
     public Integer getRecipients() { return recipients; }
     public void setRecipients(Integer recipients) { this.recipients = recipients; }
     public Integer getOpenRate() { return openRate; }
@@ -38,4 +58,14 @@ public class EmailCampaign {
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     public LocalDateTime getSentAt() { return sentAt; }
     public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
-}
\ No newline at end of file
+    public LocalDateTime getScheduledAt() { return scheduledAt; }
+    public void setScheduledAt(LocalDateTime scheduledAt) { this.scheduledAt = scheduledAt; }
+    public Long getLastRecipientId() { return lastRecipientId; }
+    public void setLastRecipientId(Long lastRecipientId) { this.lastRecipientId = lastRecipientId; }
+    public boolean isRecipientsQueued() { return recipientsQueued; }
+    public void setRecipientsQueued(boolean recipientsQueued) { this.recipientsQueued = recipientsQueued; }
+    public Integer getDeliveredCount() { return deliveredCount; }
+    public void setDeliveredCount(Integer deliveredCount) { this.deliveredCount = deliveredCount; }
+    public Integer getFailedCount() { return failedCount; }
+    public void setFailedCount(Integer failedCount) { this.failedCount = failedCount; }
+}
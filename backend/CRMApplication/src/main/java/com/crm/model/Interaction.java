@@ -4,6 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_interaction_customer_type_date", columnList = "customer_id, type, date"),
+    @Index(name = "idx_interaction_customer_date_id", columnList = "customer_id, date, id"),
+    @Index(name = "idx_interaction_admin_status_date_id", columnList = "adminStatus, date, id")
+})
 public class Interaction {
 
     @Id
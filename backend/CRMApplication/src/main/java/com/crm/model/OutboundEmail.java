@@ -0,0 +1,100 @@
+package com.crm.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One row of the outbound mail queue. Rows are written in the caller's transaction and sent later by
+ * {@link com.crm.service.MailOutboxDispatcher}.
+ */
+@Entity
+@Table(name = "outbound_emails", indexes = {
+    @Index(name = "idx_outbound_email_status_priority_next", columnList = "status, priority, nextAttemptAt, id"),
+    @Index(name = "idx_outbound_email_campaign_status", columnList = "campaign_id, status")
+}, uniqueConstraints = {
+    // Makes re-queuing a campaign chunk after a crash harmless: one email per address per campaign
+    @UniqueConstraint(name = "uk_outbound_email_campaign_recipient", columnNames = {"campaign_id", "recipient"})
+})
+public class OutboundEmail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    private String subject;
+
+    @Lob
+    private String body;
+
+    private boolean html;
+
+    // Lower goes first: 0 for account mail, 1 for campaign mail
+    private int priority;
+
+    @Column(name = "campaign_id")
+    private Long campaignId;
+
+    @Column(nullable = false, length = 16)
+    private String status; // PENDING, SENDING, SENT, FAILED
+
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt;
+
+    // Set while a dispatcher owns the row; an expired lease means its node died mid-send
+    @Column(length = 36)
+    private String claimToken;
+    private LocalDateTime lockedUntil;
+
+    @Column(length = 500)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+        if (status == null) {
+            status = "PENDING";
+        }
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    public boolean isHtml() { return html; }
+    public void setHtml(boolean html) { this.html = html; }
+    public int getPriority() { return priority; }
+    public void setPriority(int priority) { this.priority = priority; }
+    public Long getCampaignId() { return campaignId; }
+    public void setCampaignId(Long campaignId) { this.campaignId = campaignId; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public String getClaimToken() { return claimToken; }
+    public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+}
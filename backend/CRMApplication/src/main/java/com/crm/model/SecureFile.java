@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "secure_files")
+@Table(name = "secure_files", indexes = {
+    @Index(name = "idx_secure_file_user", columnList = "user_id")
+})
 public class SecureFile {
 
     @Id
@@ -27,6 +29,14 @@ public class SecureFile {
     @Column(nullable = false)
     private String pinHash;
 
+    // Salt for deriving the PIN key; shared by all of a user's files. Null for files from before envelope encryption
+    @Column(length = 32)
+    private String keySalt;
+
+    // Per-file data key encrypted with the PIN key (Base64 of nonce | ciphertext)
+    @Column(length = 128)
+    private String wrappedKey;
+
     private LocalDateTime createdAt;
 
     @PrePersist
@@ -47,6 +57,10 @@ public class SecureFile {
     public void setStoredFileName(String storedFileName) { this.storedFileName = storedFileName; }
     public String getPinHash() { return pinHash; }
     public void setPinHash(String pinHash) { this.pinHash = pinHash; }
+    public String getKeySalt() { return keySalt; }
+    public void setKeySalt(String keySalt) { this.keySalt = keySalt; }
+    public String getWrappedKey() { return wrappedKey; }
+    public void setWrappedKey(String wrappedKey) { this.wrappedKey = wrappedKey; }
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 }
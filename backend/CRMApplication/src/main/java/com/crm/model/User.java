@@ -10,7 +10,11 @@ import java.util.Collection;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_user_role_status_join", columnList = "role, status, joinDate, id"),
+    @Index(name = "idx_user_role_join", columnList = "role, joinDate, id"),
+    @Index(name = "idx_user_role_status_id", columnList = "role, status, id")
+})
 public class User implements UserDetails {
 
     public enum UserStatus {
@@ -40,11 +44,18 @@ public class User implements UserDetails {
     @Column(nullable = false)
     private UserStatus status;
 
+    // Bumped to revoke the user's tokens (see UserVersionRegistry); only ever written with SQL, never by saves
+    @Column(name = "token_version", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint not null default 0")
+    private long tokenVersion;
+
     // Customer specific fields
     private Integer age;
     private String adharCard;
     private String address;
     private String phone;
+    // Part of the keyset used to page through users, so it must never be null
+    @Column(nullable = false)
     private LocalDateTime joinDate;
     
     // Admin specific fields
@@ -54,6 +65,13 @@ public class User implements UserDetails {
     @Lob 
     private String bio;
 
+    @PrePersist
+    protected void onCreate() {
+        if (joinDate == null) {
+            joinDate = LocalDateTime.now();
+        }
+    }
+
     // --- Getters and Setters ---
 
     public Long getId() {
@@ -1,13 +1,45 @@
 package com.crm.repository;
 
+import com.crm.dto.ChatMessageDTO;
 import com.crm.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
-    
-    @Query("SELECT cm FROM ChatMessage cm WHERE (cm.sender.id = :senderId AND cm.recipient.id = :recipientId) OR (cm.sender.id = :recipientId AND cm.recipient.id = :senderId) ORDER BY cm.timestamp ASC")
-    List<ChatMessage> findChatHistory(@Param("senderId") Long senderId, @Param("recipientId") Long recipientId);
+
+    // All lookups filter on the canonical conversation id so they can use the (conversationId, timestamp, id) index
+    @Query("SELECT new com.crm.dto.ChatMessageDTO(cm.id, cm.sender.id, cm.recipient.id, cm.sender.username, cm.encryptedMessage, cm.timestamp) " +
+           "FROM ChatMessage cm WHERE cm.conversationId = :conversationId " +
+           "ORDER BY cm.timestamp ASC, cm.id ASC")
+    List<ChatMessageDTO> findChatHistory(@Param("conversationId") String conversationId);
+
+    // Keyset pages projected straight to DTOs, newest first: messages strictly older than (timestamp, id)
+    @Query("SELECT new com.crm.dto.ChatMessageDTO(cm.id, cm.sender.id, cm.recipient.id, cm.sender.username, cm.encryptedMessage, cm.timestamp) " +
+           "FROM ChatMessage cm WHERE cm.conversationId = :conversationId " +
+           "AND (cm.timestamp < :timestamp OR (cm.timestamp = :timestamp AND cm.id < :id)) " +
+           "ORDER BY cm.timestamp DESC, cm.id DESC")
+    List<ChatMessageDTO> findChatPageBefore(@Param("conversationId") String conversationId,
+                                            @Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Pageable pageable);
+
+    // Oldest first: messages strictly newer than (timestamp, id)
+    @Query("SELECT new com.crm.dto.ChatMessageDTO(cm.id, cm.sender.id, cm.recipient.id, cm.sender.username, cm.encryptedMessage, cm.timestamp) " +
+           "FROM ChatMessage cm WHERE cm.conversationId = :conversationId " +
+           "AND (cm.timestamp > :timestamp OR (cm.timestamp = :timestamp AND cm.id > :id)) " +
+           "ORDER BY cm.timestamp ASC, cm.id ASC")
+    List<ChatMessageDTO> findChatPageAfter(@Param("conversationId") String conversationId,
+                                           @Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Pageable pageable);
+
+    // Fills in the conversation id for rows written before the column existed, one batch per call
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE chat_messages SET conversation_id = CONCAT(LEAST(sender_id, recipient_id), ':', GREATEST(sender_id, recipient_id)) " +
+                   "WHERE conversation_id IS NULL LIMIT :batchSize", nativeQuery = true)
+    int backfillConversationIds(@Param("batchSize") int batchSize);
 }
@@ -11,6 +11,8 @@ import java.util.List;
 public interface CustomerCampaignRepository extends JpaRepository<CustomerCampaign, Long> {
     List<CustomerCampaign> findByCustomerId(Long customerId);
     List<CustomerCampaign> findByStatus(String status);
+    long countByCustomerId(Long customerId);
+    long countByCustomerIdAndStatus(Long customerId, String status);
 
     // **NEW**: Method to delete campaigns when a customer is deleted
     @Modifying
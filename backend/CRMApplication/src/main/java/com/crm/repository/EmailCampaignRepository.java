@@ -1,7 +1,21 @@
 package com.crm.repository;
 
 import com.crm.model.EmailCampaign;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface EmailCampaignRepository extends JpaRepository<EmailCampaign, Long> {
-}
\ No newline at end of file
+
+    List<EmailCampaign> findByStatus(String status);
+
+    // SELECT ... FOR UPDATE: the send engine's progress and lease updates wait until the caller's transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM EmailCampaign c WHERE c.id = :id")
+    Optional<EmailCampaign> findByIdForUpdate(@Param("id") Long id);
+}
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -25,17 +26,43 @@ public interface InteractionRepository extends JpaRepository<Interaction, Long>
     @Query("SELECT i FROM Interaction i WHERE i.customer = :customer AND i.type = :type AND (i.subject LIKE %:searchTerm% OR i.notes LIKE %:searchTerm%)")
     Page<Interaction> findByCustomerAndTypeContaining(@Param("customer") User customer, @Param("type") String type, @Param("searchTerm") String searchTerm, Pageable pageable);
 
+    // Projection used to build a customer's search index: id, type, subject, notes, date
+    @Query("SELECT i.id, i.type, i.subject, i.notes, i.date FROM Interaction i WHERE i.customer.id = :customerId")
+    List<Object[]> findSearchDocuments(@Param("customerId") Long customerId);
+
+    // Search matches ordered and paged by the database, for sorts the in-memory index cannot apply
+    Page<Interaction> findByCustomerIdAndIdIn(Long customerId, Collection<Long> ids, Pageable pageable);
+
     @Query("SELECT i.type as type, COUNT(i) as count FROM Interaction i WHERE i.customer = :customer GROUP BY i.type")
     List<Map<String, Object>> countInteractionsByType(@Param("customer") User customer);
 
     @Query("SELECT FUNCTION('DATE', i.date), COUNT(i) FROM Interaction i WHERE i.customer = :customer AND i.date >= :startDate GROUP BY FUNCTION('DATE', i.date) ORDER BY FUNCTION('DATE', i.date) ASC")
     List<Object[]> countInteractionsPerDay(@Param("customer") User customer, @Param("startDate") LocalDateTime startDate);
 
+    // Seeds the in-memory leaderboard: customer id, username, interaction count
+    @Query("SELECT i.customer.id, i.customer.username, COUNT(i.id) FROM Interaction i " +
+           "WHERE i.customer.role = com.crm.model.Role.ROLE_CUSTOMER " +
+           "GROUP BY i.customer.id, i.customer.username")
+    List<Object[]> countInteractionsPerCustomer();
+
     Page<Interaction> findByAdminStatus(String adminStatus, Pageable pageable);
 
+    // Keyset pagination over (date DESC, id DESC); returning a List skips the COUNT query
+    @Query("SELECT i FROM Interaction i WHERE i.adminStatus = :adminStatus " +
+           "AND (i.date < :date OR (i.date = :date AND i.id < :id)) ORDER BY i.date DESC, i.id DESC")
+    List<Interaction> findByAdminStatusBefore(@Param("adminStatus") String adminStatus, @Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT i FROM Interaction i WHERE i.customer.id = :customerId " +
+           "AND (i.date < :date OR (i.date = :date AND i.id < :id)) ORDER BY i.date DESC, i.id DESC")
+    List<Interaction> findByCustomerIdBefore(@Param("customerId") Long customerId, @Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT i FROM Interaction i WHERE i.customer.id = :customerId AND i.type = :type " +
+           "AND (i.date < :date OR (i.date = :date AND i.id < :id)) ORDER BY i.date DESC, i.id DESC")
+    List<Interaction> findByCustomerIdAndTypeBefore(@Param("customerId") Long customerId, @Param("type") String type, @Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+
     @Modifying
     @Query("DELETE FROM Interaction i WHERE i.customer.id = :customerId")
-    void deleteByCustomerId(@Param("customerId") Long customerId);
+    int deleteByCustomerId(@Param("customerId") Long customerId);
     
     // NEW METHOD FOR CALENDAR
     List<Interaction> findByCustomerAndDateBetween(User customer, LocalDateTime start, LocalDateTime end);
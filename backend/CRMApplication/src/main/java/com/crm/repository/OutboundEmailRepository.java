@@ -0,0 +1,11 @@
+package com.crm.repository;
+
+import com.crm.model.OutboundEmail;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+
+public interface OutboundEmailRepository extends JpaRepository<OutboundEmail, Long> {
+
+    long countByStatusIn(Collection<String> statuses);
+}
@@ -12,4 +12,5 @@ import java.util.Optional;
 public interface SecureFileRepository extends JpaRepository<SecureFile, Long> {
     List<SecureFile> findByUser(User user);
     Optional<SecureFile> findByIdAndUser(Long id, User user);
+    Optional<SecureFile> findFirstByUserAndKeySaltIsNotNull(User user);
 }
\ No newline at end of file
@@ -7,8 +7,12 @@ import com.crm.model.User.UserStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,8 +22,29 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Page<User> findByRole(Role role, Pageable pageable);
     Page<User> findByRoleAndStatus(Role role, UserStatus status, Pageable pageable);
     long countByRole(Role role);
+
+    // Keyset pagination over (joinDate DESC, id DESC); returning a List skips the COUNT query
+    @Query("SELECT u FROM User u WHERE u.role = :role " +
+           "AND (u.joinDate < :joinDate OR (u.joinDate = :joinDate AND u.id < :id)) " +
+           "ORDER BY u.joinDate DESC, u.id DESC")
+    List<User> findByRoleBefore(@Param("role") Role role, @Param("joinDate") LocalDateTime joinDate, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT u FROM User u WHERE u.role = :role AND u.status = :status " +
+           "AND (u.joinDate < :joinDate OR (u.joinDate = :joinDate AND u.id < :id)) " +
+           "ORDER BY u.joinDate DESC, u.id DESC")
+    List<User> findByRoleAndStatusBefore(@Param("role") Role role, @Param("status") UserStatus status, @Param("joinDate") LocalDateTime joinDate, @Param("id") Long id, Pageable pageable);
+
     long countByRoleAndStatus(Role role, UserStatus status);
 
+    // Rows without a join date would never match the keyset queries above, so they are given one at startup
+    @Query("SELECT MIN(u.joinDate) FROM User u")
+    LocalDateTime findEarliestJoinDate();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.joinDate = :joinDate WHERE u.joinDate IS NULL")
+    int backfillJoinDate(@Param("joinDate") LocalDateTime joinDate);
+
     @Query("SELECT FUNCTION('YEAR', u.joinDate) as year, FUNCTION('MONTH', u.joinDate) as month, COUNT(u.id) as count " +
            "FROM User u WHERE u.role = com.crm.model.Role.ROLE_CUSTOMER " +
            "GROUP BY year, month ORDER BY year, month")
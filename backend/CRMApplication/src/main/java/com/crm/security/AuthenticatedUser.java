@@ -0,0 +1,72 @@
+package com.crm.security;
+
+import com.crm.model.Role;
+import com.crm.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lightweight principal rebuilt from token claims, so authenticated requests don't need to load the User entity.
+ */
+public class AuthenticatedUser implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final Role role;
+    private final long version;
+
+    public AuthenticatedUser(Long id, String username, Role role, long version) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.version = version;
+    }
+
+    public static AuthenticatedUser from(User user, long version) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getRole(), version);
+    }
+
+    public Long getId() { return id; }
+    public Role getRole() { return role; }
+    public long getVersion() { return version; }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role.name()));
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    // Status is checked on every request by UserVersionRegistry.isCurrent, which rejects users that are not ACTIVE
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.crm.security;
+
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.model.User;
+import com.crm.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * The authenticated user of the current HTTP request. The JWT filter sets the principal once per request, and
+ * the User entity is loaded at most once per request no matter how many controllers and services ask for it.
+ *
+ * <p>State lives in request attributes, so this is safe to call from anywhere: outside an HTTP request
+ * (schedulers, {@code @Async} methods, STOMP handlers) there is simply no current user. The cached entity is only
+ * handed out while it is still managed by the current persistence context; otherwise it is loaded again rather
+ * than reused detached.
+ */
+@Component
+public class CurrentUser {
+
+    private static final String ATTRIBUTE = CurrentUser.class.getName();
+
+    private static final class State {
+        private AuthenticatedUser principal;
+        private User user;
+        private int userLoads;
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    void setPrincipal(AuthenticatedUser principal) {
+        State state = state(true);
+        if (state != null) {
+            state.principal = principal;
+        }
+    }
+
+    public boolean isAuthenticated() {
+        return principal() != null;
+    }
+
+    public Long getId() {
+        AuthenticatedUser principal = principal();
+        return principal != null ? principal.getId() : null;
+    }
+
+    public boolean is(Long userId) {
+        AuthenticatedUser principal = principal();
+        return principal != null && principal.getId().equals(userId);
+    }
+
+    public User get() {
+        State state = state(false);
+        if (state == null || state.principal == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        if (state.user == null || !entityManager.contains(state.user)) {
+            state.user = userRepository.findById(state.principal.getId())
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+            state.userLoads++;
+        }
+        return state.user;
+    }
+
+    // Number of User rows loaded through this holder in the current request
+    public int getUserLoads() {
+        State state = state(false);
+        return state != null ? state.userLoads : 0;
+    }
+
+    private AuthenticatedUser principal() {
+        State state = state(false);
+        return state != null ? state.principal : null;
+    }
+
+    private static State state(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        State state = (State) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (state == null && create) {
+            state = new State();
+            attributes.setAttribute(ATTRIBUTE, state, RequestAttributes.SCOPE_REQUEST);
+        }
+        return state;
+    }
+}
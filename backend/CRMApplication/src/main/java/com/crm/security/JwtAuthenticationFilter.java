@@ -1,5 +1,7 @@
 package com.crm.security;
 
+import com.crm.model.Role;
+import com.crm.model.User;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,13 +24,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
     @Autowired
     private UserDetailsService userDetailsService;
+    @Autowired
+    private TokenCache tokenCache;
+    @Autowired
+    private UserVersionRegistry userVersions;
+    @Autowired
+    private CurrentUser currentUser;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -36,17 +43,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        username = jwtUtil.extractUsername(jwt);
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            AuthenticatedUser userDetails = tokenCache.get(jwt);
+            if (userDetails == null) {
+                userDetails = verify(jwt);
+            }
+            // Revoked tokens carry an outdated version; tokens of deleted or deactivated users are rejected too
+            if (userDetails != null && userVersions.isCurrent(userDetails.getId(), userDetails.getVersion())) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+                currentUser.setPrincipal(userDetails);
             }
         }
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    // Full verification on a cache miss; successful results are cached until the token expires
+    private AuthenticatedUser verify(String jwt) {
+        final ParsedToken token = jwtUtil.parseVerified(jwt);
+        if (token.subject() == null || token.isExpired()) {
+            return null;
+        }
+        AuthenticatedUser authenticatedUser;
+        if (token.hasIdentityClaims()) {
+            long version = token.version() != null ? token.version() : 0L;
+            authenticatedUser = new AuthenticatedUser(token.userId(), token.subject(), Role.valueOf(token.role()), version);
+        } else {
+            // Tokens issued before identity claims existed still need the database lookup
+            UserDetails userDetails = this.userDetailsService.loadUserByUsername(token.subject());
+            if (!jwtUtil.validateToken(token, userDetails)) {
+                return null;
+            }
+            // The entity itself is not handed to CurrentUser: it was loaded outside the request's persistence context
+            authenticatedUser = AuthenticatedUser.from((User) userDetails, 0L);
+        }
+        tokenCache.put(jwt, authenticatedUser, token.expiration().getTime());
+        return authenticatedUser;
+    }
+}
@@ -1,10 +1,13 @@
 package com.crm.security;
 
 import com.crm.config.SessionSettings;
+import com.crm.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -25,6 +28,36 @@ public class JwtUtil {
     @Autowired
     private SessionSettings sessionSettings;
 
+    @Autowired
+    private UserVersionRegistry userVersions;
+
+    // Both are thread-safe, so they are built once instead of per token
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                     .setSigningKey(signingKey)
+                     .build();
+    }
+
+    /**
+     * Verifies the signature once and returns every claim the application needs.
+     */
+    public ParsedToken parseVerified(String token) {
+        final Claims claims = extractAllClaims(token);
+        return new ParsedToken(
+                claims.getSubject(),
+                claims.getExpiration(),
+                claims.getIssuedAt(),
+                claims.get("role", String.class),
+                claims.get("uid", Long.class),
+                claims.get("ver", Long.class)
+        );
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -39,19 +72,17 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                   .setSigningKey(getSigningKey())
-                   .build()
-                   .parseClaimsJws(token)
-                   .getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof User user) {
+            // Identity claims let the auth filter build the principal without a database lookup
+            claims.put("uid", user.getId());
+            claims.put("role", user.getRole().name());
+            claims.put("ver", userVersions.currentVersion(user.getId()));
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -62,17 +93,15 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return validateToken(parseVerified(token), userDetails);
     }
-    
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+
+    public Boolean validateToken(ParsedToken token, UserDetails userDetails) {
+        return (token.subject().equals(userDetails.getUsername()) && !token.isExpired());
     }
 }
-
@@ -0,0 +1,18 @@
+package com.crm.security;
+
+import java.util.Date;
+
+/**
+ * Immutable view of a token whose signature has already been verified by {@link JwtUtil#parseVerified(String)}.
+ * {@code userId}, {@code role} and {@code version} are null for tokens issued before those claims existed.
+ */
+public record ParsedToken(String subject, Date expiration, Date issuedAt, String role, Long userId, Long version) {
+
+    public boolean isExpired() {
+        return expiration.before(new Date());
+    }
+
+    public boolean hasIdentityClaims() {
+        return userId != null && role != null;
+    }
+}
@@ -0,0 +1,124 @@
+package com.crm.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of tokens that have already been verified, keyed by a SHA-256 digest of the token.
+ * An entry lives until the token's own expiry, so repeated requests with the same token skip
+ * signature verification and the user lookup entirely.
+ *
+ * <p>Reads are lock-free. Writes keep two small indexes in step with the map: the keys of each user, so revoking
+ * a user touches only that user's tokens, and the entries ordered by expiry, so a full cache drops the tokens
+ * closest to expiring (expired ones first) rather than arbitrary, possibly hot, ones.
+ */
+@Component
+public class TokenCache {
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, CachedToken> entries = new ConcurrentHashMap<>();
+    // Guarded by this, like every change to entries
+    private final Map<String, Set<String>> keysByUser = new HashMap<>();
+    private final NavigableSet<CachedToken> byExpiry = new TreeSet<>(
+            Comparator.comparingLong(CachedToken::expiresAt).thenComparing(CachedToken::key));
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AuthenticatedUser get(String token) {
+        CachedToken cached = entries.get(digest(token));
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (cached.expiresAt() <= System.currentTimeMillis()) {
+            remove(cached);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.user();
+    }
+
+    public synchronized void put(String token, AuthenticatedUser user, long expiresAt) {
+        CachedToken cached = new CachedToken(digest(token), user.getUsername(), user, expiresAt);
+        CachedToken previous = entries.get(cached.key());
+        if (previous != null) {
+            remove(previous);
+        }
+        while (entries.size() >= maxSize && !byExpiry.isEmpty()) {
+            remove(byExpiry.first());
+        }
+        entries.put(cached.key(), cached);
+        keysByUser.computeIfAbsent(cached.username(), username -> new HashSet<>()).add(cached.key());
+        byExpiry.add(cached);
+    }
+
+    /**
+     * Drops every cached token of the given user, e.g. after the account was deleted or its status changed.
+     */
+    public synchronized void invalidateUser(String username) {
+        Set<String> keys = keysByUser.remove(username);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            CachedToken cached = entries.remove(key);
+            if (cached != null) {
+                byExpiry.remove(cached);
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private synchronized void remove(CachedToken cached) {
+        if (!entries.remove(cached.key(), cached)) {
+            return;
+        }
+        byExpiry.remove(cached);
+        Set<String> keys = keysByUser.get(cached.username());
+        if (keys != null) {
+            keys.remove(cached.key());
+            if (keys.isEmpty()) {
+                keysByUser.remove(cached.username());
+            }
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CachedToken(String key, String username, AuthenticatedUser user, long expiresAt) {}
+}
@@ -0,0 +1,82 @@
+package com.crm.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user session version, stored in users.token_version. Every token carries the version that was current when
+ * it was issued; bumping a user's version revokes all of their outstanding tokens, on every node and across
+ * restarts. A token is only accepted while its user still exists, is ACTIVE and has the same version.
+ *
+ * <p>Lookups are cached for a short while so authenticated requests cost at most one primary-key query per user
+ * per cache period. A bump takes effect immediately on the node that made it and within the cache period elsewhere.
+ */
+@Component
+public class UserVersionRegistry {
+
+    private static final String LOAD_SQL = "SELECT token_version, status FROM users WHERE id = ?";
+    private static final String BUMP_SQL = "UPDATE users SET token_version = token_version + 1 WHERE id = ?";
+
+    private record Entry(long version, boolean active, long loadedAt) {}
+
+    // Stands in for users that no longer exist
+    private static final Entry MISSING = new Entry(-1L, false, 0L);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${security.token-version.cache-ttl-ms:30000}")
+    private long cacheTtlMs;
+
+    private final Map<Long, Entry> versions = new ConcurrentHashMap<>();
+
+    public long currentVersion(Long userId) {
+        return lookup(userId).version();
+    }
+
+    /**
+     * Revokes every token issued to the user so far. Inside a transaction the cached entry is dropped again after
+     * commit, so a lookup made in between cannot keep the old version cached.
+     */
+    public void bump(Long userId) {
+        jdbcTemplate.update(BUMP_SQL, userId);
+        versions.remove(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    versions.remove(userId);
+                }
+            });
+        }
+    }
+
+    public boolean isCurrent(Long userId, long version) {
+        Entry entry = lookup(userId);
+        return entry.active() && entry.version() == version;
+    }
+
+    private Entry lookup(Long userId) {
+        if (userId == null) {
+            return MISSING;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = versions.get(userId);
+        if (entry == null || now - entry.loadedAt() >= cacheTtlMs) {
+            List<Entry> rows = jdbcTemplate.query(LOAD_SQL,
+                    (rs, rowNum) -> new Entry(rs.getLong("token_version"), "ACTIVE".equals(rs.getString("status")), now),
+                    userId);
+            entry = rows.isEmpty() ? new Entry(MISSING.version(), false, now) : rows.get(0);
+            versions.put(userId, entry);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,207 @@
+package com.crm.service;
+
+import com.crm.model.Role;
+import com.crm.model.User;
+import com.crm.model.User.UserStatus;
+import com.crm.repository.InteractionRepository;
+import com.crm.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incrementally maintained rollup behind the admin dashboard. Write paths report deltas, which are applied once
+ * their transaction commits (rolled back writes never show up), and a periodic reconciliation re-reads the
+ * aggregates from the database to correct any drift (e.g. from writes made outside the services or on other nodes).
+ *
+ * <p>Reconciliation does not overwrite the counters, which would lose deltas committed while the queries run.
+ * It remembers the counters when it starts, reads the database in one snapshot, and then, under the same lock the
+ * deltas take, adds the difference between the database and the remembered values. Deltas applied in the meantime
+ * are kept.
+ */
+@Service
+public class AdminAnalyticsStore {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private InteractionRepository interactionRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final AtomicLong totalCustomers = new AtomicLong();
+    private final AtomicLong activeCustomers = new AtomicLong();
+    private final AtomicLong totalInteractions = new AtomicLong();
+    // "yyyy-MM" -> customers who joined that month; keys sort chronologically
+    private volatile NavigableMap<String, Long> customersByMonth = new ConcurrentSkipListMap<>();
+    private final AtomicLong reconcileCount = new AtomicLong();
+    // Guards deltas and the reconciliation diff
+    private final Object lock = new Object();
+    private TransactionTemplate snapshotTransaction;
+
+    @PostConstruct
+    public void init() {
+        snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setReadOnly(true);
+        try {
+            reconcile();
+        } catch (Exception e) {
+            System.err.println("Could not load admin analytics on startup. Error: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.reconcile-interval-ms:300000}",
+               initialDelayString = "${analytics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long[] before = new long[3];
+        Map<String, Long> monthsBefore;
+        synchronized (lock) {
+            before[0] = totalCustomers.get();
+            before[1] = activeCustomers.get();
+            before[2] = totalInteractions.get();
+            monthsBefore = new HashMap<>(customersByMonth);
+        }
+
+        // One read-only transaction, so all four aggregates come from the same snapshot
+        long[] actual = new long[3];
+        Map<String, Long> months = new HashMap<>();
+        snapshotTransaction.executeWithoutResult(status -> {
+            for (Object[] row : userRepository.countCustomersByMonth()) {
+                if (row[0] != null && row[1] != null) {
+                    months.put(row[0] + "-" + String.format("%02d", row[1]), ((Number) row[2]).longValue());
+                }
+            }
+            actual[0] = userRepository.countByRole(Role.ROLE_CUSTOMER);
+            actual[1] = userRepository.countByRoleAndStatus(Role.ROLE_CUSTOMER, UserStatus.ACTIVE);
+            actual[2] = interactionRepository.count();
+        });
+
+        synchronized (lock) {
+            totalCustomers.addAndGet(actual[0] - before[0]);
+            activeCustomers.addAndGet(actual[1] - before[1]);
+            totalInteractions.addAndGet(actual[2] - before[2]);
+            NavigableMap<String, Long> corrected = new ConcurrentSkipListMap<>(customersByMonth);
+            Set<String> keys = new HashSet<>(months.keySet());
+            keys.addAll(monthsBefore.keySet());
+            for (String month : keys) {
+                long drift = months.getOrDefault(month, 0L) - monthsBefore.getOrDefault(month, 0L);
+                if (drift != 0) {
+                    corrected.merge(month, drift, Long::sum);
+                }
+            }
+            customersByMonth = corrected;
+        }
+        reconcileCount.incrementAndGet();
+    }
+
+    public void customerAdded(User customer) {
+        UserStatus status = customer.getStatus();
+        LocalDateTime joinDate = customer.getJoinDate();
+        afterCommit(() -> {
+            totalCustomers.incrementAndGet();
+            if (status == UserStatus.ACTIVE) {
+                activeCustomers.incrementAndGet();
+            }
+            adjustMonth(joinDate, 1);
+        });
+    }
+
+    public void customerRemoved(User customer, long interactionCount) {
+        UserStatus status = customer.getStatus();
+        LocalDateTime joinDate = customer.getJoinDate();
+        afterCommit(() -> {
+            totalCustomers.decrementAndGet();
+            if (status == UserStatus.ACTIVE) {
+                activeCustomers.decrementAndGet();
+            }
+            adjustMonth(joinDate, -1);
+            totalInteractions.addAndGet(-interactionCount);
+        });
+    }
+
+    public void customerStatusChanged(UserStatus oldStatus, UserStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        afterCommit(() -> {
+            if (oldStatus == UserStatus.ACTIVE) {
+                activeCustomers.decrementAndGet();
+            } else if (newStatus == UserStatus.ACTIVE) {
+                activeCustomers.incrementAndGet();
+            }
+        });
+    }
+
+    public void interactionAdded() {
+        afterCommit(totalInteractions::incrementAndGet);
+    }
+
+    public long getTotalCustomers() {
+        return totalCustomers.get();
+    }
+
+    public long getActiveCustomers() {
+        return activeCustomers.get();
+    }
+
+    public long getTotalInteractions() {
+        return totalInteractions.get();
+    }
+
+    public long getReconcileCount() {
+        return reconcileCount.get();
+    }
+
+    public List<Map<String, Object>> getCustomerGrowth() {
+        List<Map<String, Object>> growth = new ArrayList<>();
+        customersByMonth.forEach((month, count) -> {
+            if (count > 0) {
+                Map<String, Object> dataPoint = new HashMap<>();
+                dataPoint.put("date", month);
+                dataPoint.put("count", count);
+                growth.add(dataPoint);
+            }
+        });
+        return growth;
+    }
+
+    // Applies a delta once the caller's transaction commits, or right away outside a transaction
+    private void afterCommit(Runnable delta) {
+        Runnable locked = () -> {
+            synchronized (lock) {
+                delta.run();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    locked.run();
+                }
+            });
+        } else {
+            locked.run();
+        }
+    }
+
+    private void adjustMonth(LocalDateTime joinDate, long delta) {
+        if (joinDate == null) {
+            return;
+        }
+        String month = joinDate.getYear() + "-" + String.format("%02d", joinDate.getMonthValue());
+        customersByMonth.merge(month, delta, Long::sum);
+    }
+}
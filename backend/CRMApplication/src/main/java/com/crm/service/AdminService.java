@@ -1,5 +1,7 @@
 package com.crm.service;
 
+import com.crm.dto.CampaignDeliveryDTO;
+import com.crm.dto.CursorPage;
 import com.crm.model.CustomerCampaign;
 import com.crm.model.EmailCampaign;
 import com.crm.model.Interaction;
@@ -12,10 +14,12 @@ import java.util.Map;
 
 public interface AdminService {
     Page<User> getAllCustomers(Pageable pageable);
+    CursorPage<User> scrollCustomers(String cursor, int size);
     User addCustomer(User customer);
     User updateCustomer(Long id, User customerDetails);
     void deleteCustomer(Long id);
     Page<User> getPendingCustomers(Pageable pageable);
+    CursorPage<User> scrollPendingCustomers(String cursor, int size);
     User approveCustomer(Long customerId);
     void rejectCustomer(Long customerId);
     Map<String, Object> getAdminAnalytics();
@@ -23,6 +27,8 @@ public interface AdminService {
     EmailCampaign createCampaign(EmailCampaign campaign);
     EmailCampaign updateCampaign(Long id, EmailCampaign campaignDetails);
     void deleteCampaign(Long id);
+    EmailCampaign sendCampaign(Long id);
+    CampaignDeliveryDTO getCampaignDelivery(Long id);
     List<CustomerCampaign> getPendingCampaigns();
     CustomerCampaign updateCustomerCampaignStatus(Long campaignId, String status);
     User getAdminProfile(String username);
@@ -30,7 +36,9 @@ public interface AdminService {
     void changeAdminPassword(String username, Map<String, String> passwordData);
     Settings getSystemSettings();
     Settings updateSystemSettings(Settings settings);
+    Map<String, Object> getSystemMetrics();
     Page<Interaction> getPendingInteractions(Pageable pageable);
+    CursorPage<Interaction> scrollPendingInteractions(String cursor, int size);
     Interaction updateInteractionStatus(Long interactionId, String status);
 }
 
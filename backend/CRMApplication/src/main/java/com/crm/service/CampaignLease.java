@@ -0,0 +1,67 @@
+package com.crm.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Time-limited ownership of an email campaign, so that when several application nodes run only one of them
+ * starts a scheduled campaign or queues its recipients. The lease is a conditional UPDATE on the campaign row;
+ * expiry is checked against the database clock, so nodes with skewed clocks still agree on who holds it. A node
+ * that dies simply stops renewing and another one takes over once the lease runs out.
+ */
+@Service
+public class CampaignLease {
+
+    private static final String ACQUIRE_SQL =
+            "UPDATE email_campaign SET lease_owner = ?, lease_until = NOW() + INTERVAL ? SECOND "
+            + "WHERE id = ? AND status = ? AND (lease_owner IS NULL OR lease_owner = ? OR lease_until < NOW())";
+    // scheduled_at is written in application time, so it is compared with the caller's clock rather than NOW()
+    private static final String ACQUIRE_DUE_SQL =
+            "UPDATE email_campaign SET lease_owner = ?, lease_until = NOW() + INTERVAL ? SECOND "
+            + "WHERE id = ? AND status = 'scheduled' AND scheduled_at <= ? "
+            + "AND (lease_owner IS NULL OR lease_owner = ? OR lease_until < NOW())";
+    private static final String RELEASE_SQL =
+            "UPDATE email_campaign SET lease_owner = NULL, lease_until = NULL WHERE id = ? AND lease_owner = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${campaign.lease-seconds:120}")
+    private int leaseSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Takes or renews the lease on a campaign that is in {@code status}. Returns false when the campaign has moved
+     * on to another status or another node holds a live lease.
+     */
+    public boolean acquire(Long campaignId, String status) {
+        return jdbcTemplate.update(ACQUIRE_SQL, nodeId, leaseSeconds, campaignId, status, nodeId) == 1;
+    }
+
+    /**
+     * Takes the lease on a scheduled campaign only if its scheduledAt has been reached. Returns false when it has
+     * been moved later, taken out of "scheduled", or another node holds a live lease.
+     */
+    public boolean acquireDue(Long campaignId, LocalDateTime now) {
+        return jdbcTemplate.update(ACQUIRE_DUE_SQL, nodeId, leaseSeconds, campaignId, Timestamp.valueOf(now), nodeId) == 1;
+    }
+
+    public void release(Long campaignId) {
+        jdbcTemplate.update(RELEASE_SQL, campaignId, nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+}
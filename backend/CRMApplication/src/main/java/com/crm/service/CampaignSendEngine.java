@@ -0,0 +1,310 @@
+package com.crm.service;
+
+import com.crm.dto.CampaignDeliveryDTO;
+import com.crm.exception.InvalidCampaignException;
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.model.EmailCampaign;
+import com.crm.repository.EmailCampaignRepository;
+import com.crm.util.MailTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends an {@link EmailCampaign} to every active customer. Recipients are read in id order a chunk at a time and
+ * each chunk becomes a batch of rows in the mail outbox, written in the same transaction that advances the
+ * campaign's lastRecipientId. A crash therefore loses nothing: the next check resumes from the stored id, and the
+ * (campaign, recipient) unique key makes any repeated insert a no-op. Sending, retries, connection reuse and rate
+ * limiting are the outbox's job; each outbox row is the recipient's delivery state. A {@link CampaignLease} makes
+ * sure only one node queues a given campaign at a time.
+ *
+ * <p>A campaign goes draft/scheduled -> sending -> sent. It is marked sent, with delivered and failed counts,
+ * once every recipient's email has either been accepted by the SMTP server or given up on.
+ */
+@Service
+public class CampaignSendEngine {
+
+    private static final String RECIPIENTS_SQL =
+            "SELECT id, username, email FROM users WHERE role = 'ROLE_CUSTOMER' AND status = 'ACTIVE' AND id > ? "
+            + "AND email IS NOT NULL ORDER BY id LIMIT ?";
+    // A recipient already queued for the campaign is left as it is; any other error still fails the chunk
+    private static final String INSERT_SQL =
+            "INSERT INTO outbound_emails (recipient, subject, body, html, priority, campaign_id, status, attempts, next_attempt_at, created_at) "
+            + "VALUES (?, ?, ?, true, 1, ?, 'PENDING', 0, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+    private static final String QUEUED_BEFORE_SQL =
+            "SELECT COUNT(*) FROM outbound_emails WHERE campaign_id = ? AND recipient IN (";
+    // Also renews the lease; matches nothing once the campaign is cancelled or another node has taken over
+    private static final String PROGRESS_SQL =
+            "UPDATE email_campaign SET last_recipient_id = ?, recipients = recipients + ?, lease_until = NOW() + INTERVAL ? SECOND "
+            + "WHERE id = ? AND status = 'sending' AND lease_owner = ?";
+    private static final String QUEUED_SQL =
+            "UPDATE email_campaign SET recipients_queued = true, lease_owner = NULL, lease_until = NULL "
+            + "WHERE id = ? AND status = 'sending' AND lease_owner = ?";
+    // Resets the progress of a draft or scheduled campaign; matches nothing once it has moved on or has no body
+    private static final String START_SQL =
+            "UPDATE email_campaign SET status = 'sending', recipients = 0, last_recipient_id = 0, recipients_queued = false, "
+            + "delivered_count = NULL, failed_count = NULL WHERE id = ? AND body IS NOT NULL AND TRIM(body) <> '' AND ";
+    private static final String SENT_SQL =
+            "UPDATE email_campaign SET status = 'sent', sent_at = ?, delivered_count = ?, failed_count = ? "
+            + "WHERE id = ? AND status = 'sending'";
+    private static final String DELIVERY_SQL =
+            "SELECT status, COUNT(*) AS total FROM outbound_emails WHERE campaign_id = ? GROUP BY status";
+
+    @Autowired
+    private EmailCampaignRepository emailCampaignRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MailOutboxDispatcher mailOutboxDispatcher;
+    @Autowired
+    private CampaignLease campaignLease;
+
+    @Value("${campaign.send.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${campaign.send.threads:2}")
+    private int threads;
+
+    private ExecutorService queuers;
+    // Campaigns whose recipients this node is queuing right now
+    private final Set<Long> inProgress = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        queuers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "campaign-send-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Interrupted campaigns are resumed from their stored progress on the next start
+        queuers.shutdownNow();
+    }
+
+    public static boolean isSendable(EmailCampaign campaign) {
+        return campaign.getStatus() == null || "draft".equals(campaign.getStatus()) || "scheduled".equals(campaign.getStatus());
+    }
+
+    /**
+     * Moves a draft or scheduled campaign to sending and starts queuing its recipients once the current
+     * transaction (if any) commits.
+     */
+    public EmailCampaign send(EmailCampaign campaign) {
+        if (!isSendable(campaign)) {
+            throw new InvalidCampaignException("Campaign " + campaign.getId() + " is already " + campaign.getStatus());
+        }
+        if (campaign.getBody() == null || campaign.getBody().isBlank()) {
+            throw new InvalidCampaignException("Campaign " + campaign.getId() + " has no body to send.");
+        }
+        campaign.setStatus("sending");
+        campaign.setRecipients(0);
+        campaign.setLastRecipientId(0L);
+        campaign.setRecipientsQueued(false);
+        campaign.setDeliveredCount(null);
+        campaign.setFailedCount(null);
+        EmailCampaign saved = emailCampaignRepository.save(campaign);
+        submitAfterCommit(saved.getId());
+        return saved;
+    }
+
+    /**
+     * Same as {@link #send(EmailCampaign)} for a campaign that is not loaded. The move to sending is a conditional
+     * update, so a campaign that another request or node has started or edited in the meantime is not overwritten.
+     */
+    public EmailCampaign send(Long campaignId) {
+        if (jdbcTemplate.update(START_SQL + "status IN ('draft', 'scheduled')", campaignId) == 0) {
+            EmailCampaign campaign = emailCampaignRepository.findById(campaignId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Email Campaign not found: " + campaignId));
+            if (campaign.getBody() == null || campaign.getBody().isBlank()) {
+                throw new InvalidCampaignException("Campaign " + campaignId + " has no body to send.");
+            }
+            throw new InvalidCampaignException("Campaign " + campaignId + " is already " + campaign.getStatus());
+        }
+        submitAfterCommit(campaignId);
+        return emailCampaignRepository.findById(campaignId)
+                .orElseThrow(() -> new ResourceNotFoundException("Email Campaign not found: " + campaignId));
+    }
+
+    /**
+     * Starts a scheduled campaign whose lease this node holds. Returns false, changing nothing, when the campaign
+     * is no longer scheduled, has no body, or the lease has passed to another node.
+     */
+    public boolean startLeased(Long campaignId) {
+        if (jdbcTemplate.update(START_SQL + "status = 'scheduled' AND lease_owner = ?", campaignId, campaignLease.getNodeId()) != 1) {
+            return false;
+        }
+        submitAfterCommit(campaignId);
+        return true;
+    }
+
+    private void submitAfterCommit(Long campaignId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(campaignId);
+                }
+            });
+        } else {
+            submit(campaignId);
+        }
+    }
+
+    private void submit(Long campaignId) {
+        if (inProgress.add(campaignId)) {
+            queuers.execute(() -> {
+                try {
+                    queueRecipients(campaignId);
+                } catch (RuntimeException e) {
+                    // Stays in sending with its progress saved; the next completion check (on any node) resumes it
+                    System.err.println("Queuing recipients for campaign " + campaignId + " failed: " + e.getMessage());
+                    campaignLease.release(campaignId);
+                } finally {
+                    inProgress.remove(campaignId);
+                }
+            });
+        }
+    }
+
+    private void queueRecipients(Long campaignId) {
+        // Only one node queues a campaign; progress is read after taking the lease so it is current
+        if (!campaignLease.acquire(campaignId, "sending")) {
+            return;
+        }
+        EmailCampaign campaign = emailCampaignRepository.findById(campaignId).orElse(null);
+        if (campaign == null || campaign.isRecipientsQueued()) {
+            campaignLease.release(campaignId);
+            return;
+        }
+        MailTemplate subject = MailTemplate.compile(campaign.getSubject(), false);
+        MailTemplate body = MailTemplate.compile(campaign.getBody(), true);
+        long cursor = campaign.getLastRecipientId() != null ? campaign.getLastRecipientId() : 0L;
+        Map<String, String> values = new HashMap<>();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Object[]> rows = new ArrayList<>(chunkSize);
+            List<Object> emails = new ArrayList<>(chunkSize + 1);
+            emails.add(campaignId);
+            long[] lastId = {cursor};
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.query(RECIPIENTS_SQL, rs -> {
+                values.put("username", rs.getString("username"));
+                values.put("email", rs.getString("email"));
+                rows.add(new Object[] {rs.getString("email"), subject.render(values), body.render(values), campaignId, now, now});
+                emails.add(rs.getString("email"));
+                lastId[0] = rs.getLong("id");
+            }, cursor, chunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            long chunkEnd = lastId[0];
+            String queuedBeforeSql = QUEUED_BEFORE_SQL + String.join(", ", Collections.nCopies(rows.size(), "?")) + ")";
+            Boolean stillSending = transactionTemplate.execute(status -> {
+                // Recipients already in the outbox for this campaign are skipped by the insert and not counted again
+                Integer queuedBefore = jdbcTemplate.queryForObject(queuedBeforeSql, Integer.class, emails.toArray());
+                int inserted = rows.size() - (queuedBefore != null ? queuedBefore : 0);
+                // Progress is written first so a campaign cancelled mid-send stops without queuing this chunk
+                if (jdbcTemplate.update(PROGRESS_SQL, chunkEnd, inserted, campaignLease.getLeaseSeconds(),
+                        campaignId, campaignLease.getNodeId()) == 0) {
+                    return false;
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(stillSending)) {
+                return;
+            }
+            mailOutboxDispatcher.wakeUp();
+            cursor = chunkEnd;
+            if (rows.size() < chunkSize) {
+                break;
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            campaignLease.release(campaignId);
+        } else if (jdbcTemplate.update(QUEUED_SQL, campaignId, campaignLease.getNodeId()) == 1) {
+            System.out.println("Campaign " + campaignId + ": all recipients queued.");
+        }
+    }
+
+    /**
+     * Resumes campaigns whose queuing was interrupted (crash, restart, database error) and marks campaigns sent
+     * once none of their emails are still pending.
+     */
+    @Scheduled(fixedDelayString = "${campaign.send.check-interval-ms:30000}")
+    public void checkCampaigns() {
+        for (EmailCampaign campaign : emailCampaignRepository.findByStatus("sending")) {
+            if (!campaign.isRecipientsQueued()) {
+                submit(campaign.getId());
+                continue;
+            }
+            CampaignDeliveryDTO delivery = getDelivery(campaign);
+            // Conditional, so a campaign deleted or already finished by another node since it was read is left alone
+            if (delivery.getPending() == 0 && jdbcTemplate.update(SENT_SQL, Timestamp.valueOf(LocalDateTime.now()),
+                    delivery.getDelivered(), delivery.getFailed(), campaign.getId()) == 1) {
+                System.out.println("Campaign " + campaign.getId() + " sent: " + delivery.getDelivered()
+                        + " delivered, " + delivery.getFailed() + " failed.");
+            }
+        }
+    }
+
+    /**
+     * For a campaign being deleted: emails not yet sent are dropped and the queuing loop stops at its next chunk.
+     * The caller must hold the campaign row lock, which a chunk's progress update also takes, so no chunk can be
+     * inserted between this and the delete. Rows being sent right now are dropped by the dispatcher if they fail.
+     */
+    public void discardPending(Long campaignId) {
+        jdbcTemplate.update("DELETE FROM outbound_emails WHERE campaign_id = ? AND status = 'PENDING'", campaignId);
+    }
+
+    public CampaignDeliveryDTO getDelivery(Long campaignId) {
+        EmailCampaign campaign = emailCampaignRepository.findById(campaignId)
+                .orElseThrow(() -> new ResourceNotFoundException("Email Campaign not found: " + campaignId));
+        return getDelivery(campaign);
+    }
+
+    private CampaignDeliveryDTO getDelivery(EmailCampaign campaign) {
+        // Sent campaigns keep their final counts; the outbox rows behind them are purged after a while
+        if ("sent".equals(campaign.getStatus()) && campaign.getDeliveredCount() != null) {
+            return new CampaignDeliveryDTO(campaign.getId(), campaign.getStatus(), campaign.getRecipients(),
+                    0, campaign.getDeliveredCount(), campaign.getFailedCount() != null ? campaign.getFailedCount() : 0);
+        }
+        long[] counts = new long[3];
+        jdbcTemplate.query(DELIVERY_SQL, rs -> {
+            long total = rs.getLong("total");
+            switch (rs.getString("status")) {
+                case "SENT" -> counts[1] += total;
+                case "FAILED" -> counts[2] += total;
+                default -> counts[0] += total;
+            }
+        }, campaign.getId());
+        return new CampaignDeliveryDTO(campaign.getId(), campaign.getStatus(), campaign.getRecipients(), counts[0], counts[1], counts[2]);
+    }
+}
@@ -0,0 +1,128 @@
+package com.crm.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background re-encryption of chat messages that are still plaintext or were written with a retired key.
+ * Each run handles one small batch in id order, so the job never competes noticeably with live traffic.
+ *
+ * <p>Progress is kept per key id in chat_key_rotation, so a restart resumes where the pass left off and a new key
+ * starts a new pass. A lease on that row, taken the same way as {@link CampaignLease} and checked against the
+ * database clock, means only one node works on a pass at a time; if it dies another node picks up from the last
+ * recorded id once the lease runs out. Once a pass for the current key is complete, every node idles.
+ */
+@Service
+public class ChatKeyRotationJob {
+
+    private static final String SELECT_SQL =
+            "SELECT id, encrypted_message FROM chat_messages WHERE id > ? AND encrypted_message NOT LIKE ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_SQL = "UPDATE chat_messages SET encrypted_message = ? WHERE id = ?";
+
+    private static final String CREATE_PROGRESS_SQL =
+            "INSERT INTO chat_key_rotation (key_id, last_id, finished) VALUES (?, 0, false) "
+            + "ON DUPLICATE KEY UPDATE key_id = key_id";
+    private static final String ACQUIRE_SQL =
+            "UPDATE chat_key_rotation SET lease_owner = ?, lease_until = NOW() + INTERVAL ? SECOND "
+            + "WHERE key_id = ? AND finished = false AND (lease_owner IS NULL OR lease_owner = ? OR lease_until < NOW())";
+    private static final String LAST_ID_SQL = "SELECT last_id FROM chat_key_rotation WHERE key_id = ?";
+    private static final String FINISHED_SQL = "SELECT finished FROM chat_key_rotation WHERE key_id = ?";
+    private static final String PROGRESS_SQL =
+            "UPDATE chat_key_rotation SET last_id = ?, finished = ? WHERE key_id = ? AND lease_owner = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE chat_key_rotation SET lease_owner = NULL, lease_until = NULL WHERE key_id = ? AND lease_owner = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ChatMessageCipher chatMessageCipher;
+
+    @Value("${chat.encryption.rotation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.encryption.rotation.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chat.encryption.rotation.lease-seconds:60}")
+    private int leaseSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    // The key id whose progress row is known to exist, and the one whose pass is known to be complete
+    private Integer preparedKeyId;
+    private volatile Integer finishedKeyId;
+    private final AtomicLong reencrypted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    @Scheduled(fixedDelayString = "${chat.encryption.rotation.interval-ms:5000}",
+               initialDelayString = "${chat.encryption.rotation.interval-ms:5000}")
+    public synchronized void rotateBatch() {
+        int keyId = chatMessageCipher.getCurrentKeyId();
+        if (!enabled || Integer.valueOf(keyId).equals(finishedKeyId)) {
+            return;
+        }
+        if (!Integer.valueOf(keyId).equals(preparedKeyId)) {
+            jdbcTemplate.update(CREATE_PROGRESS_SQL, keyId);
+            preparedKeyId = keyId;
+        }
+        if (jdbcTemplate.update(ACQUIRE_SQL, nodeId, leaseSeconds, keyId, nodeId) == 0) {
+            // Another node holds the pass, or it is already complete
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(FINISHED_SQL, Boolean.class, keyId))) {
+                finishedKeyId = keyId;
+            }
+            return;
+        }
+        long lastId = jdbcTemplate.queryForObject(LAST_ID_SQL, Long.class, keyId);
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_SQL, lastId, chatMessageCipher.getCurrentPrefixPattern(), batchSize);
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            lastId = id;
+            String plaintext = chatMessageCipher.decryptOrNull((String) row.get("encrypted_message"));
+            if (plaintext == null) {
+                // Unknown key or corrupt value: leave the row alone rather than overwrite it
+                skipped.incrementAndGet();
+                continue;
+            }
+            updates.add(new Object[] {chatMessageCipher.encrypt(plaintext), id});
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            reencrypted.addAndGet(updates.size());
+        }
+
+        boolean done = rows.size() < batchSize;
+        // Re-encrypting a row twice is harmless, so a batch whose progress is lost is simply redone
+        if (jdbcTemplate.update(PROGRESS_SQL, lastId, done, keyId, nodeId) == 0) {
+            System.err.println("Chat key rotation lease for key " + keyId + " was lost; another node continues the pass.");
+            return;
+        }
+        if (done) {
+            jdbcTemplate.update(RELEASE_SQL, keyId, nodeId);
+            finishedKeyId = keyId;
+            System.out.println("Chat key rotation to key " + keyId + " complete. Messages re-encrypted on this node: "
+                    + reencrypted.get() + ", unreadable: " + skipped.get());
+        }
+    }
+
+    public long getReencryptedCount() {
+        return reencrypted.get();
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public boolean isFinished() {
+        return Integer.valueOf(chatMessageCipher.getCurrentKeyId()).equals(finishedKeyId);
+    }
+}
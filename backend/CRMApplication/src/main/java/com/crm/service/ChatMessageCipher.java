@@ -0,0 +1,133 @@
+package com.crm.service;
+
+import com.crm.dto.ChatMessageDTO;
+import com.crm.util.CryptoEngine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encrypts chat messages at rest with AES-GCM. Stored values look like {@code $gcm$<keyId>$<base64>}, so every row
+ * names the key it was written with and keys can be rotated: new messages use the current key, older keys stay
+ * available for reading until {@link ChatKeyRotationJob} has re-encrypted their rows. Values without the prefix are
+ * plaintext from before encryption and are returned unchanged.
+ */
+@Service
+public class ChatMessageCipher {
+
+    private static final String PREFIX = "$gcm$";
+    private static final String UNREADABLE = "[message could not be decrypted]";
+
+    @Value("${chat.encryption.key}")
+    private String currentSecret;
+
+    @Value("${chat.encryption.key-id:1}")
+    private int currentKeyId;
+
+    // Retired keys still needed to read old rows, as "id:secret,id:secret"
+    @Value("${chat.encryption.previous-keys:}")
+    private String previousKeys;
+
+    private final Map<Integer, SecretKey> keys = new HashMap<>();
+    private SecretKey currentKey;
+    private String currentPrefix;
+
+    @PostConstruct
+    public void init() {
+        if (currentSecret == null || currentSecret.isBlank()) {
+            throw new IllegalStateException("chat.encryption.key must not be empty");
+        }
+        String[] entries = previousKeys.split(",");
+        for (int i = 0; i < entries.length; i++) {
+            String entry = entries[i];
+            if (entry.isBlank()) {
+                continue;
+            }
+            // The entry itself is never echoed, since it contains a secret
+            int separator = entry.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalStateException("chat.encryption.previous-keys entry " + (i + 1)
+                        + " must look like <key id>:<secret>");
+            }
+            int keyId;
+            try {
+                keyId = Integer.parseInt(entry.substring(0, separator).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("chat.encryption.previous-keys entry " + (i + 1)
+                        + " does not start with a numeric key id");
+            }
+            String secret = entry.substring(separator + 1).trim();
+            if (secret.isEmpty()) {
+                throw new IllegalStateException("chat.encryption.previous-keys entry " + (i + 1) + " has an empty secret");
+            }
+            if (keyId == currentKeyId || keys.containsKey(keyId)) {
+                throw new IllegalStateException("chat.encryption.previous-keys lists key id " + keyId
+                        + " more than once or also as chat.encryption.key-id");
+            }
+            keys.put(keyId, CryptoEngine.secretKey(secret));
+        }
+        currentKey = CryptoEngine.secretKey(currentSecret);
+        keys.put(currentKeyId, currentKey);
+        currentPrefix = PREFIX + currentKeyId + "$";
+    }
+
+    public String encrypt(String plaintext) {
+        try {
+            return currentPrefix + CryptoEngine.sealString(currentKey, plaintext);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt chat message", e);
+        }
+    }
+
+    public String decrypt(String stored) {
+        String plaintext = decryptOrNull(stored);
+        return plaintext == null ? UNREADABLE : plaintext;
+    }
+
+    /**
+     * Like {@link #decrypt(String)}, but returns null when the value cannot be decrypted (unknown key or corrupt).
+     */
+    public String decryptOrNull(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return stored;
+        }
+        int separator = stored.indexOf('$', PREFIX.length());
+        try {
+            SecretKey key = keys.get(Integer.parseInt(stored.substring(PREFIX.length(), separator)));
+            if (key == null) {
+                System.err.println("No chat key configured for stored message " + stored.substring(0, separator + 1));
+                return null;
+            }
+            return CryptoEngine.openString(key, stored.substring(separator + 1));
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Decrypts a page of history in place; the thread's cipher and the cached keys are reused for every row
+    public List<ChatMessageDTO> decryptAll(List<ChatMessageDTO> messages) {
+        for (ChatMessageDTO message : messages) {
+            message.setContent(decrypt(message.getContent()));
+        }
+        return messages;
+    }
+
+    public int getCurrentKeyId() {
+        return currentKeyId;
+    }
+
+    public boolean isCurrent(String stored) {
+        return stored != null && stored.startsWith(currentPrefix);
+    }
+
+    // LIKE pattern matching rows already encrypted with the current key
+    public String getCurrentPrefixPattern() {
+        return currentPrefix + "%";
+    }
+}
@@ -1,19 +1,27 @@
 package com.crm.service;
 
+import com.crm.dto.ChatHistoryPage;
 import com.crm.dto.ChatMessageDTO;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.model.ChatMessage;
 import com.crm.model.User;
 import com.crm.repository.ChatMessageRepository;
 import com.crm.repository.UserRepository;
+import com.crm.security.CurrentUser;
+import com.crm.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ChatService {
@@ -24,9 +32,21 @@ public class ChatService {
     private ChatMessageRepository chatMessageRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private CurrentUser currentUser;
+    @Autowired
+    private ChatWriteBehindQueue writeBehindQueue;
+    @Autowired
+    private ChatMessageCipher chatMessageCipher;
+
+    // user id -> username, so the write-behind path does not need a user lookup per message
+    private final Map<Long, String> usernames = new ConcurrentHashMap<>();
 
-    @Transactional
     public void saveAndSendMessage(ChatMessageDTO dto) {
+        if (writeBehindQueue.isEnabled()) {
+            sendWriteBehind(dto);
+            return;
+        }
         User sender = userRepository.findById(dto.getSenderId())
                 .orElseThrow(() -> new ResourceNotFoundException("Sender not found"));
         User recipient = userRepository.findById(dto.getRecipientId())
@@ -35,12 +55,12 @@ public class ChatService {
         ChatMessage chatMessage = new ChatMessage();
         chatMessage.setSender(sender);
         chatMessage.setRecipient(recipient);
-        chatMessage.setEncryptedMessage(dto.getContent()); // In a real app, you would encrypt this
+        chatMessage.setEncryptedMessage(chatMessageCipher.encrypt(dto.getContent()));
         chatMessage.setTimestamp(LocalDateTime.now());
 
         ChatMessage savedMsg = chatMessageRepository.save(chatMessage);
         
-        ChatMessageDTO responseDto = convertToDto(savedMsg);
+        ChatMessageDTO responseDto = convertToDto(savedMsg, dto.getContent());
 
         // Send message to the recipient's private queue
         messagingTemplate.convertAndSendToUser(
@@ -54,24 +74,118 @@ public class ChatService {
         );
     }
 
+    /**
+     * Delivers the message first and persists it asynchronously. The message is journaled before delivery,
+     * so an acknowledged message survives a crash even if its database insert has not run yet.
+     */
+    private void sendWriteBehind(ChatMessageDTO dto) {
+        long receivedAt = System.nanoTime();
+        String senderUsername = usernameOf(dto.getSenderId(), "Sender not found");
+        usernameOf(dto.getRecipientId(), "Recipient not found");
+
+        ChatMessageDTO responseDto = new ChatMessageDTO(
+                writeBehindQueue.nextId(),
+                dto.getSenderId(),
+                dto.getRecipientId(),
+                senderUsername,
+                dto.getContent(),
+                LocalDateTime.now()
+        );
+        // The journal and the database only ever see the ciphertext
+        ChatMessageDTO stored = new ChatMessageDTO(
+                responseDto.getId(),
+                responseDto.getSenderId(),
+                responseDto.getRecipientId(),
+                senderUsername,
+                chatMessageCipher.encrypt(dto.getContent()),
+                responseDto.getTimestamp()
+        );
+        try {
+            writeBehindQueue.submit(stored, receivedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal chat message", e);
+        }
+
+        messagingTemplate.convertAndSendToUser(
+            String.valueOf(dto.getRecipientId()), "/queue/messages",
+            responseDto
+        );
+        messagingTemplate.convertAndSendToUser(
+            String.valueOf(dto.getSenderId()), "/queue/messages",
+            responseDto
+        );
+        writeBehindQueue.recordDelivery(receivedAt);
+    }
+
+    private String usernameOf(Long userId, String notFoundMessage) {
+        String username = usernames.get(userId);
+        if (username == null) {
+            username = userRepository.findById(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException(notFoundMessage))
+                    .getUsername();
+            usernames.put(userId, username);
+        }
+        return username;
+    }
+
+    // Called when a user is renamed or removed so the write-behind path stops using the cached username
+    public void forgetUser(Long userId) {
+        usernames.remove(userId);
+    }
+
     public List<ChatMessageDTO> getChatHistory(String currentUsername, Long otherUserId) {
-        User currentUser = userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new ResourceNotFoundException("Current user not found"));
-        
-        List<ChatMessage> messages = chatMessageRepository.findChatHistory(currentUser.getId(), otherUserId);
+        return chatMessageCipher.decryptAll(
+                chatMessageRepository.findChatHistory(ChatMessage.conversationKey(resolveUserId(currentUsername), otherUserId)));
+    }
+
+    /**
+     * Returns one window of the conversation, oldest message first. Without cursors this is the latest window;
+     * {@code before} scrolls back from an olderCursor and {@code after} catches up from a newerCursor.
+     */
+    public ChatHistoryPage getChatHistoryPage(String currentUsername, Long otherUserId, String before, String after, int size) {
+        String conversationId = ChatMessage.conversationKey(resolveUserId(currentUsername), otherUserId);
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        if (after != null && !after.isBlank()) {
+            KeysetCursor from = KeysetCursor.decode(after);
+            List<ChatMessageDTO> rows = chatMessageRepository.findChatPageAfter(conversationId, from.timestamp(), from.id(), limit);
+            List<ChatMessageDTO> messages = chatMessageCipher.decryptAll(rows.size() > size ? rows.subList(0, size) : rows);
+            String newerCursor = messages.isEmpty() ? after : cursorOf(messages.get(messages.size() - 1));
+            String olderCursor = messages.isEmpty() ? null : cursorOf(messages.get(0));
+            return new ChatHistoryPage(messages, olderCursor, newerCursor);
+        }
+
+        KeysetCursor from = KeysetCursor.decode(before);
+        List<ChatMessageDTO> rows = chatMessageRepository.findChatPageBefore(conversationId, from.timestamp(), from.id(), limit);
+        boolean hasOlder = rows.size() > size;
+        List<ChatMessageDTO> messages = new ArrayList<>(hasOlder ? rows.subList(0, size) : rows);
+        Collections.reverse(messages);
+        chatMessageCipher.decryptAll(messages);
+        String olderCursor = hasOlder ? cursorOf(messages.get(0)) : null;
+        String newerCursor = messages.isEmpty() ? null : cursorOf(messages.get(messages.size() - 1));
+        return new ChatHistoryPage(messages, olderCursor, newerCursor);
+    }
+
+    private Long resolveUserId(String username) {
+        if (currentUser.isAuthenticated()) {
+            return currentUser.getId();
+        }
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("Current user not found"))
+                .getId();
+    }
 
-        return messages.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    private static String cursorOf(ChatMessageDTO message) {
+        return new KeysetCursor(message.getTimestamp(), message.getId()).encode();
     }
 
-    private ChatMessageDTO convertToDto(ChatMessage message) {
+    private ChatMessageDTO convertToDto(ChatMessage message, String content) {
         return new ChatMessageDTO(
                 message.getId(),
                 message.getSender().getId(),
                 message.getRecipient().getId(),
                 message.getSender().getUsername(),
-                message.getEncryptedMessage(), // In a real app, you would decrypt this
+                content,
                 message.getTimestamp()
         );
     }
@@ -0,0 +1,542 @@
+package com.crm.service;
+
+import com.crm.dto.ChatMessageDTO;
+import com.crm.model.ChatMessage;
+import com.crm.util.MessageIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for chat messages. Messages are appended to a local journal, handed to a bounded
+ * queue and written by a single background thread with JDBC batch inserts.
+ *
+ * <p>{@link #submit} forces the journal entry to disk before it returns; that is the durability point, and a
+ * message acknowledged after it survives a crash of the process or the machine. Forces are group-committed: senders
+ * append under the journal lock, then one of them forces everything appended so far while the others wait for it,
+ * so a burst of messages costs one fsync rather than one each. The journal is replayed on startup
+ * and cut back as messages are persisted: emptied when nothing is outstanding, and compacted past the oldest
+ * outstanding entry once the persisted head grows large. A batch the database refuses is retried with backoff
+ * rather than dropped. A message already in the table (a replay) is recognised by its duplicate key and a stored row
+ * with the same sender, recipient and timestamp; one the table can never accept, including one whose id is taken by a
+ * different message, is parked in a ".rejected" file next to the journal so it does not block the rest.
+ */
+@Service
+public class ChatWriteBehindQueue {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (id, sender_id, recipient_id, conversation_id, encrypted_message, timestamp, is_read) "
+            + "VALUES (?, ?, ?, ?, ?, ?, false)";
+    private static final String STORED_SQL =
+            "SELECT sender_id, recipient_id, timestamp FROM chat_messages WHERE id = ?";
+
+    private static final long RETRY_BASE_MS = 500;
+    private static final long RETRY_MAX_MS = 30000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${chat.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.write-behind.batch-size:200}")
+    private int batchSize;
+
+    // How long a sender may block on a full queue before the message is written synchronously instead
+    @Value("${chat.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${chat.write-behind.journal:./data/chat-journal.log}")
+    private String journalFile;
+
+    // Persisted entries at the head of the journal are compacted away once they take up this many bytes
+    @Value("${chat.write-behind.compact-threshold-bytes:4194304}")
+    private long compactThresholdBytes;
+
+    // Must be unique per application instance so generated message ids never collide
+    @Value("${chat.node-id:0}")
+    private int nodeId;
+
+    private MessageIdGenerator idGenerator;
+
+    private BlockingQueue<PendingMessage> queue;
+    // Messages whose synchronous fallback insert failed; the writer retries them ahead of the queue
+    private final Queue<PendingMessage> parked = new ConcurrentLinkedQueue<>();
+    private Path journalPath;
+    private Path rejectedPath;
+    private FileChannel journal;
+    private long journalSize;
+    private long nextSequence;
+    // Journal offset of every entry not yet persisted, by submission sequence; guarded by journalLock
+    private final TreeMap<Long, Long> unpersisted = new TreeMap<>();
+    private final Object journalLock = new Object();
+    // Bytes ever appended to the journal; unlike offsets this never goes back on truncation. Guarded by journalLock
+    private long appendedBytes;
+    // How much of appendedBytes is known to be on disk, and whether a sender is forcing right now; guarded by syncLock
+    private final Object syncLock = new Object();
+    private long durableBytes;
+    private boolean syncing;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final AtomicLong persistedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong journalSyncs = new AtomicLong();
+    private final AtomicLong persistLagTotalMs = new AtomicLong();
+    private final AtomicLong maxPersistLagMs = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong deliveryLagTotalMicros = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        idGenerator = new MessageIdGenerator(nodeId);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        journalPath = Paths.get(journalFile).toAbsolutePath().normalize();
+        rejectedPath = journalPath.resolveSibling(journalPath.getFileName() + ".rejected");
+        Files.createDirectories(journalPath.getParent());
+        replayJournal();
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        journalSize = 0;
+
+        running = true;
+        writer = new Thread(this::drainLoop, "chat-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        List<PendingMessage> remaining = new ArrayList<>(parked);
+        parked.clear();
+        remaining.addAll(drainAll());
+        try {
+            flush(remaining);
+        } catch (RuntimeException e) {
+            // Anything left stays in the journal and is replayed on the next start
+            System.err.println("Chat write-behind could not flush on shutdown. Error: " + e.getMessage());
+        }
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long nextId() {
+        return idGenerator.next();
+    }
+
+    /**
+     * Journals the message, forces it to disk and queues it for persistence. Blocks briefly when the queue is full
+     * and falls back to a synchronous insert if it stays full; if that insert fails too, the writer retries it.
+     */
+    public void submit(ChatMessageDTO message, long receivedAtNanos) throws IOException {
+        PendingMessage pending;
+        long appendedUpTo;
+        synchronized (journalLock) {
+            ByteBuffer entry = ByteBuffer.wrap((toJournalLine(message) + "\n").getBytes(StandardCharsets.UTF_8));
+            long offset = journalSize;
+            long position = offset;
+            while (entry.hasRemaining()) {
+                position += journal.write(entry, position);
+            }
+            appendedBytes += position - offset;
+            appendedUpTo = appendedBytes;
+            journalSize = position;
+            pending = new PendingMessage(nextSequence++, message, receivedAtNanos);
+            unpersisted.put(pending.sequence(), offset);
+        }
+        awaitDurable(appendedUpTo);
+        boolean queued;
+        try {
+            queued = queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            try {
+                flush(List.of(pending));
+            } catch (RuntimeException e) {
+                // Already durable in the journal, so the sender is not failed for it
+                System.err.println("Chat message " + message.getId() + " could not be written synchronously, "
+                        + "leaving it to the writer. Error: " + e.getMessage());
+                parked.add(pending);
+            }
+        }
+    }
+
+    /**
+     * Returns once the journal is on disk up to {@code appendedUpTo}. The first sender to find no force in progress
+     * forces everything appended by then, covering every sender that appended before it; the rest wait and are
+     * released together, and any still not covered elects the next one.
+     */
+    private void awaitDurable(long appendedUpTo) throws IOException {
+        synchronized (syncLock) {
+            while (durableBytes < appendedUpTo && syncing) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the chat journal to reach disk", e);
+                }
+            }
+            if (durableBytes >= appendedUpTo) {
+                return;
+            }
+            syncing = true;
+        }
+        long covered = 0;
+        try {
+            FileChannel channel;
+            synchronized (journalLock) {
+                channel = journal;
+                covered = appendedBytes;
+            }
+            // Outside the journal lock, so other senders keep appending while this one waits on the disk
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Compaction replaced the file after forcing what it copied; force whatever came after on the new one
+                synchronized (journalLock) {
+                    journal.force(false);
+                }
+            }
+            journalSyncs.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            covered = 0;
+            throw e;
+        } finally {
+            synchronized (syncLock) {
+                durableBytes = Math.max(durableBytes, covered);
+                syncing = false;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    public void recordDelivery(long receivedAtNanos) {
+        deliveredCount.incrementAndGet();
+        deliveryLagTotalMicros.addAndGet((System.nanoTime() - receivedAtNanos) / 1000);
+    }
+
+    public int getQueueDepth() {
+        return (queue == null ? 0 : queue.size()) + parked.size();
+    }
+
+    public long getPersistedCount() {
+        return persistedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getJournalSyncs() {
+        return journalSyncs.get();
+    }
+
+    public long getAveragePersistLagMs() {
+        long count = persistedCount.get();
+        return count == 0 ? 0 : persistLagTotalMs.get() / count;
+    }
+
+    public long getMaxPersistLagMs() {
+        return maxPersistLagMs.get();
+    }
+
+    public long getAverageDeliveryLagMicros() {
+        long count = deliveredCount.get();
+        return count == 0 ? 0 : deliveryLagTotalMicros.get() / count;
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        long retryDelayMs = 0;
+        while (running) {
+            try {
+                if (batch.isEmpty() && !fill(batch)) {
+                    continue;
+                }
+                flush(batch);
+                batch.clear();
+                retryDelayMs = 0;
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // The same batch is tried again until the database takes it; meanwhile new messages wait in the queue
+                retryDelayMs = retryDelayMs == 0 ? RETRY_BASE_MS : Math.min(retryDelayMs * 2, RETRY_MAX_MS);
+                System.err.println("Chat write-behind batch of " + batch.size() + " failed, retrying in "
+                        + retryDelayMs + " ms. Error: " + e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(retryDelayMs);
+                } catch (InterruptedException ie) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Parked messages go first; returns false if nothing arrived within a second
+    private boolean fill(List<PendingMessage> batch) throws InterruptedException {
+        PendingMessage next;
+        while (batch.size() < batchSize && (next = parked.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            PendingMessage first = queue.poll(1, TimeUnit.SECONDS);
+            if (first == null) {
+                return false;
+            }
+            batch.add(first);
+        }
+        queue.drainTo(batch, batchSize - batch.size());
+        return true;
+    }
+
+    private List<PendingMessage> drainAll() {
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        return remaining;
+    }
+
+    // Throws, leaving the journal untouched, when the batch could not be written and should be retried
+    private void flush(List<PendingMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<ChatMessageDTO> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message());
+        }
+        int rejected = insert(messages);
+
+        long now = System.nanoTime();
+        for (PendingMessage pending : batch) {
+            long lagMs = TimeUnit.NANOSECONDS.toMillis(now - pending.receivedAtNanos());
+            persistLagTotalMs.addAndGet(lagMs);
+            maxPersistLagMs.accumulateAndGet(lagMs, Math::max);
+        }
+        persistedCount.addAndGet(batch.size() - rejected);
+
+        synchronized (journalLock) {
+            for (PendingMessage pending : batch) {
+                unpersisted.remove(pending.sequence());
+            }
+            truncateJournal();
+        }
+    }
+
+    /**
+     * Inserts the messages as one batch. If the batch hits a constraint it is redone row by row: a duplicate key whose
+     * stored row matches means the message was persisted by an earlier attempt; a mismatching row or any other
+     * violation parks the message in the rejected file. Returns how many were rejected; other failures propagate so
+     * the caller can retry.
+     */
+    private int insert(List<ChatMessageDTO> messages) {
+        List<Object[]> rows = new ArrayList<>(messages.size());
+        for (ChatMessageDTO message : messages) {
+            rows.add(toRow(message));
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            return 0;
+        } catch (DataIntegrityViolationException e) {
+            System.out.println("Chat write-behind batch hit a constraint, inserting row by row. Error: " + e.getMessage());
+        }
+        List<ChatMessageDTO> rejected = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, rows.get(i));
+            } catch (DuplicateKeyException e) {
+                // Normally already persisted, e.g. replayed after a crash between the insert and the journal
+                // truncation; anything else holding the id is a different message, such as two nodes sharing a node id
+                if (!isStored(messages.get(i))) {
+                    System.err.println("Rejecting chat message " + messages.get(i).getId()
+                            + ": its id is taken by a different message.");
+                    rejected.add(messages.get(i));
+                }
+            } catch (DataIntegrityViolationException e) {
+                System.err.println("Rejecting chat message " + messages.get(i).getId() + ". Error: " + e.getMessage());
+                rejected.add(messages.get(i));
+            }
+        }
+        if (!rejected.isEmpty()) {
+            park(rejected);
+        }
+        return rejected.size();
+    }
+
+    private boolean isStored(ChatMessageDTO message) {
+        Boolean matches = jdbcTemplate.query(STORED_SQL, rs -> {
+            if (!rs.next()) {
+                return false;
+            }
+            LocalDateTime timestamp = rs.getTimestamp("timestamp").toLocalDateTime();
+            // DATETIME(6) keeps microseconds and MySQL rounds rather than truncates the rest
+            return message.getSenderId() == rs.getLong("sender_id")
+                    && message.getRecipientId() == rs.getLong("recipient_id")
+                    && Duration.between(timestamp, message.getTimestamp()).abs().toNanos() < 1000;
+        }, message.getId());
+        return Boolean.TRUE.equals(matches);
+    }
+
+    private void park(List<ChatMessageDTO> rejected) {
+        StringBuilder lines = new StringBuilder();
+        for (ChatMessageDTO message : rejected) {
+            lines.append(toJournalLine(message)).append('\n');
+        }
+        try {
+            Files.writeString(rejectedPath, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND,
+                    StandardOpenOption.SYNC);
+            rejectedCount.addAndGet(rejected.size());
+        } catch (IOException e) {
+            // Not marked as done: the messages stay in the journal rather than being lost
+            throw new IllegalStateException("Could not write rejected chat messages to " + rejectedPath, e);
+        }
+    }
+
+    // Called under journalLock
+    private void truncateJournal() {
+        try {
+            long keepFrom = unpersisted.isEmpty() ? journalSize : unpersisted.firstEntry().getValue();
+            if (keepFrom == journalSize) {
+                journal.truncate(0);
+                journalSize = 0;
+            } else if (keepFrom >= compactThresholdBytes) {
+                compactJournal(keepFrom);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not truncate the chat journal. Error: " + e.getMessage());
+        }
+    }
+
+    // Under steady load the journal is never empty, so the persisted head is cut off by rewriting the tail
+    private void compactJournal(long keepFrom) throws IOException {
+        Path compacted = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        long length = journalSize - keepFrom;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += journal.transferTo(keepFrom + copied, length - copied, out);
+            }
+            out.force(true);
+        }
+        Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal.close();
+        journal = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journalSize = length;
+        unpersisted.replaceAll((sequence, offset) -> offset - keepFrom);
+    }
+
+    private void replayJournal() {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        List<ChatMessageDTO> messages = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    messages.add(fromJournalLine(line));
+                } catch (RuntimeException e) {
+                    // A torn last line from a crash mid-write; the message was never acknowledged
+                    System.err.println("Skipping unreadable chat journal entry. Error: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the chat journal " + journalPath, e);
+        }
+        // A failure here stops startup with the journal intact rather than truncating it unreplayed
+        int rejected = 0;
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            rejected += insert(messages.subList(from, Math.min(from + batchSize, messages.size())));
+        }
+        if (!messages.isEmpty()) {
+            System.out.println("Replayed " + messages.size() + " chat messages from the write-behind journal"
+                    + (rejected > 0 ? ", " + rejected + " rejected." : "."));
+        }
+    }
+
+    private static Object[] toRow(ChatMessageDTO message) {
+        return new Object[] {
+                message.getId(),
+                message.getSenderId(),
+                message.getRecipientId(),
+                ChatMessage.conversationKey(message.getSenderId(), message.getRecipientId()),
+                message.getContent(),
+                Timestamp.valueOf(message.getTimestamp())
+        };
+    }
+
+    private static String toJournalLine(ChatMessageDTO message) {
+        return message.getId() + "|" + message.getSenderId() + "|" + message.getRecipientId() + "|"
+                + message.getTimestamp() + "|"
+                + Base64.getEncoder().encodeToString(message.getContent().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ChatMessageDTO fromJournalLine(String line) {
+        String[] parts = line.split("\\|", 5);
+        return new ChatMessageDTO(
+                Long.parseLong(parts[0]),
+                Long.parseLong(parts[1]),
+                Long.parseLong(parts[2]),
+                null,
+                new String(Base64.getDecoder().decode(parts[4]), StandardCharsets.UTF_8),
+                LocalDateTime.parse(parts[3]));
+    }
+
+    private record PendingMessage(long sequence, ChatMessageDTO message, long receivedAtNanos) {}
+}
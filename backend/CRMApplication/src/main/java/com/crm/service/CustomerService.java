@@ -1,5 +1,6 @@
 package com.crm.service;
 
+import com.crm.dto.CursorPage;
 import com.crm.model.CustomerCampaign;
 import com.crm.model.EmailCampaign;
 import com.crm.model.Interaction;
@@ -23,6 +24,7 @@ public interface CustomerService {
 
     // Interactions
     Page<Interaction> getInteractionsForCustomer(Long customerId, String type, String searchTerm, Pageable pageable);
+    CursorPage<Interaction> scrollInteractionsForCustomer(Long customerId, String type, String cursor, int size);
     Interaction addInteraction(Long customerId, Interaction interaction);
     Interaction updateCustomerInteractionStatus(Long customerId, Long interactionId, String status);
 
@@ -1,7 +1,7 @@
 package com.crm.service;
 
 import com.crm.dto.SecureFileDTO;
-import org.springframework.core.io.Resource;
+import com.crm.dto.SecureFileDownload;
 import org.springframework.web.multipart.MultipartFile;
 import java.util.List;
 
@@ -9,7 +9,7 @@ public interface FileStorageService {
 
     void uploadFile(MultipartFile file, String pin) throws Exception;
 
-    Resource downloadFile(Long fileId, String pin) throws Exception;
+    SecureFileDownload downloadFile(Long fileId, String pin) throws Exception;
 
     List<SecureFileDTO> getFilesForUser();
 
@@ -0,0 +1,185 @@
+package com.crm.service;
+
+import com.crm.dto.UserInteractionCountDTO;
+import com.crm.model.User;
+import com.crm.repository.InteractionRepository;
+import com.crm.util.LongLongHashMap;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps per-customer interaction counts and the current top customers in memory,
+ * so the admin dashboard can show the leaderboard without a join/group/sort over all interactions.
+ * Mutations are serialized and applied once their transaction commits; reads return an immutable snapshot without
+ * locking. Like {@link AdminAnalyticsStore}, the counts are periodically reconciled against the database by adding
+ * the difference between the database and the counts seen when reconciliation started, so increments that land
+ * while the query runs are kept.
+ */
+@Service
+public class InteractionLeaderboard {
+
+    private static final int TOP_K = 10;
+    private static final Comparator<Entry> BY_COUNT_DESC = Comparator.comparingLong(Entry::count).reversed();
+
+    @Autowired private InteractionRepository interactionRepository;
+
+    private final LongLongHashMap counts = new LongLongHashMap(1024);
+    private final Map<Long, String> usernames = new HashMap<>();
+    private final List<Entry> top = new ArrayList<>(TOP_K + 1);
+    private volatile List<UserInteractionCountDTO> snapshot = List.of();
+
+    @PostConstruct
+    public void init() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            System.err.println("Could not seed the interaction leaderboard. Error: " + e.getMessage());
+        }
+    }
+
+    public List<UserInteractionCountDTO> getTop() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.reconcile-interval-ms:300000}",
+               initialDelayString = "${analytics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<Long, Long> before = new HashMap<>();
+        synchronized (this) {
+            counts.forEach(before::put);
+        }
+        List<Object[]> rows = interactionRepository.countInteractionsPerCustomer();
+
+        synchronized (this) {
+            Map<Long, Long> actual = new HashMap<>(rows.size() * 2);
+            for (Object[] row : rows) {
+                long id = ((Number) row[0]).longValue();
+                actual.put(id, ((Number) row[2]).longValue());
+                usernames.put(id, (String) row[1]);
+            }
+            Set<Long> ids = new HashSet<>(actual.keySet());
+            ids.addAll(before.keySet());
+            for (Long id : ids) {
+                long drift = actual.getOrDefault(id, 0L) - before.getOrDefault(id, 0L);
+                long count = counts.addTo(id, drift);
+                if (count <= 0) {
+                    counts.remove(id);
+                    usernames.remove(id);
+                }
+            }
+            rebuildTop();
+        }
+    }
+
+    public void interactionAdded(User customer) {
+        long id = customer.getId();
+        String username = customer.getUsername();
+        afterCommit(() -> increment(id, username));
+    }
+
+    public void customerRemoved(Long customerId) {
+        afterCommit(() -> remove(customerId));
+    }
+
+    public void customerRenamed(Long customerId, String username) {
+        afterCommit(() -> rename(customerId, username));
+    }
+
+    private synchronized void increment(long id, String username) {
+        long count = counts.addTo(id, 1);
+        usernames.put(id, username);
+
+        Entry existing = findInTop(id);
+        if (existing != null) {
+            top.remove(existing);
+        } else if (top.size() >= TOP_K && count <= top.get(top.size() - 1).count()) {
+            return;
+        }
+        top.add(new Entry(id, count));
+        top.sort(BY_COUNT_DESC);
+        if (top.size() > TOP_K) {
+            top.remove(top.size() - 1);
+        }
+        publish();
+    }
+
+    private synchronized void remove(Long customerId) {
+        counts.remove(customerId);
+        usernames.remove(customerId);
+        if (findInTop(customerId) != null) {
+            rebuildTop();
+        }
+    }
+
+    private synchronized void rename(Long customerId, String username) {
+        if (usernames.containsKey(customerId)) {
+            usernames.put(customerId, username);
+            if (findInTop(customerId) != null) {
+                publish();
+            }
+        }
+    }
+
+    // Rolled back interactions and deletions never reach the counts
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    // Full O(n log K) pass with a bounded min-heap; only needed when a top entry disappears
+    private void rebuildTop() {
+        PriorityQueue<Entry> heap = new PriorityQueue<>(TOP_K + 1, Comparator.comparingLong(Entry::count));
+        counts.forEach((id, count) -> {
+            if (heap.size() < TOP_K) {
+                heap.add(new Entry(id, count));
+            } else if (count > heap.peek().count()) {
+                heap.poll();
+                heap.add(new Entry(id, count));
+            }
+        });
+        top.clear();
+        top.addAll(heap);
+        top.sort(BY_COUNT_DESC);
+        publish();
+    }
+
+    private Entry findInTop(long id) {
+        for (Entry entry : top) {
+            if (entry.id() == id) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void publish() {
+        List<UserInteractionCountDTO> leaderboard = new ArrayList<>(top.size());
+        for (Entry entry : top) {
+            leaderboard.add(new UserInteractionCountDTO(usernames.get(entry.id()), entry.count()));
+        }
+        snapshot = List.copyOf(leaderboard);
+    }
+
+    private record Entry(long id, long count) {}
+}
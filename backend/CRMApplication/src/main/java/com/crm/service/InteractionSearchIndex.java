@@ -0,0 +1,289 @@
+package com.crm.service;
+
+import com.crm.model.Interaction;
+import com.crm.repository.InteractionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over interaction subjects and notes, built per customer on first search
+ * and kept up to date as interactions are added. Replaces the LIKE '%term%' scans for searches.
+ * Every suffix of every word is indexed, so a term matches anywhere inside a word ("voice" finds "invoice"), as the
+ * LIKE scan did. The one difference is a query of several words: they are ANDed and need not be adjacent, where the
+ * LIKE scan looked for the whole string verbatim. Results are ranked by term weight (subject hits count double),
+ * then by date, newest first, unless the caller asks for a sort.
+ *
+ * <p>New interactions are indexed once their transaction commits. An index is registered before its documents
+ * are read, and interactions committed while it is being built are buffered and applied after the initial load
+ * (duplicates are ignored), so none are missed; searches wait until the build has finished.
+ */
+@Service
+public class InteractionSearchIndex {
+
+    private static final int SUBJECT_WEIGHT = 2;
+    private static final int NOTES_WEIGHT = 1;
+    private static final Set<String> SORTABLE = Set.of("id", "type", "date");
+
+    @Autowired private InteractionRepository interactionRepository;
+
+    @Value("${search.index.max-customers:1000}")
+    private int maxCustomers;
+
+    // Least recently searched customers are evicted once the limit is reached
+    private final Map<Long, CustomerIndex> indexes = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, CustomerIndex> eldest) {
+                    return size() > maxCustomers;
+                }
+            });
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the ids of matching interactions in rank order, or ordered by {@code sort} when it is sorted.
+     * {@code type} is optional; see {@link #canSort(Sort)} for the properties that can be sorted on.
+     */
+    public List<Long> search(Long customerId, String type, String query, Sort sort) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        Comparator<Document> order = comparatorFor(sort);
+        while (true) {
+            // Null only when another thread's build failed; this thread then builds the index itself
+            List<Long> ids = indexFor(customerId).search(terms, type, order);
+            if (ids != null) {
+                return ids;
+            }
+        }
+    }
+
+    // The index only knows each interaction's id, type and date
+    public static boolean canSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void interactionAdded(Interaction interaction) {
+        Long customerId = interaction.getCustomer().getId();
+        Long id = interaction.getId();
+        String type = interaction.getType();
+        String subject = interaction.getSubject();
+        String notes = interaction.getNotes();
+        LocalDateTime date = interaction.getDate();
+        afterCommit(() -> {
+            CustomerIndex index = indexes.get(customerId);
+            // Indexes are built lazily, so customers that were never searched need no maintenance
+            if (index != null) {
+                index.add(id, type, subject, notes, date);
+            }
+        });
+    }
+
+    public void customerRemoved(Long customerId) {
+        afterCommit(() -> indexes.remove(customerId));
+    }
+
+    public int getIndexedCustomers() {
+        return indexes.size();
+    }
+
+    private CustomerIndex indexFor(Long customerId) {
+        CustomerIndex index;
+        synchronized (indexes) {
+            index = indexes.get(customerId);
+            if (index != null) {
+                return index;
+            }
+            // Registered before the read, so interactions committed from here on are buffered by the index
+            index = new CustomerIndex();
+            indexes.put(customerId, index);
+        }
+        try {
+            index.load(interactionRepository.findSearchDocuments(customerId));
+        } catch (RuntimeException e) {
+            indexes.remove(customerId, index);
+            index.fail();
+            throw e;
+        }
+        return index;
+    }
+
+    private static Comparator<Document> comparatorFor(Sort sort) {
+        if (sort == null || sort.isUnsorted() || !canSort(sort)) {
+            return null;
+        }
+        Comparator<Document> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Document> next = switch (order.getProperty()) {
+                case "date" -> Comparator.comparing(Document::date, Comparator.nullsFirst(Comparator.naturalOrder()));
+                case "type" -> Comparator.comparing(Document::type, Comparator.nullsFirst(Comparator.naturalOrder()));
+                default -> Comparator.comparing(Document::id);
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator.thenComparing(Document::id, Comparator.reverseOrder());
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private static final class CustomerIndex {
+        // word suffix -> (interaction id -> weight)
+        private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        private final Map<Long, Document> documents = new HashMap<>();
+        // Interactions committed while the index is being built; null once it is ready
+        private List<Pending> pending = new ArrayList<>();
+        private boolean failed;
+
+        synchronized void add(Long id, String type, String subject, String notes, LocalDateTime date) {
+            if (pending != null) {
+                pending.add(new Pending(id, type, subject, notes, date));
+            } else {
+                index(id, type, subject, notes, date);
+            }
+        }
+
+        synchronized void load(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                index((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (LocalDateTime) row[4]);
+            }
+            for (Pending interaction : pending) {
+                index(interaction.id(), interaction.type(), interaction.subject(), interaction.notes(), interaction.date());
+            }
+            pending = null;
+            notifyAll();
+        }
+
+        synchronized void fail() {
+            failed = true;
+            pending = null;
+            notifyAll();
+        }
+
+        private void index(Long id, String type, String subject, String notes, LocalDateTime date) {
+            if (documents.put(id, new Document(id, type, date)) != null) {
+                return;
+            }
+            for (String token : tokenize(subject)) {
+                indexSuffixes(token, id, SUBJECT_WEIGHT);
+            }
+            for (String token : tokenize(notes)) {
+                indexSuffixes(token, id, NOTES_WEIGHT);
+            }
+        }
+
+        // A prefix of a suffix is a substring, so prefix lookups over suffixes find terms anywhere in the word
+        private void indexSuffixes(String token, Long id, int weight) {
+            for (int start = 0; start < token.length(); start++) {
+                if (Character.isLowSurrogate(token.charAt(start))) {
+                    continue;
+                }
+                postings.computeIfAbsent(token.substring(start), t -> new HashMap<>()).merge(id, weight, Integer::sum);
+            }
+        }
+
+        // Returns null if the build this search waited for failed
+        synchronized List<Long> search(Set<String> terms, String type, Comparator<Document> order) {
+            while (pending != null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while the search index was being built", e);
+                }
+            }
+            if (failed) {
+                return null;
+            }
+            Map<Long, Integer> scores = null;
+            for (String term : terms) {
+                Map<Long, Integer> termScores = new HashMap<>();
+                // Prefix match over suffixes: every entry in [term, term + max char) starts with term
+                for (Map<Long, Integer> docs : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                    docs.forEach((id, weight) -> termScores.merge(id, weight, Integer::sum));
+                }
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<Document> matches = new ArrayList<>(scores.size());
+            for (Long id : scores.keySet()) {
+                Document document = documents.get(id);
+                if (type == null || type.equals(document.type())) {
+                    matches.add(document);
+                }
+            }
+            final Map<Long, Integer> finalScores = scores;
+            matches.sort(order != null ? order : Comparator.<Document>comparingInt(d -> finalScores.get(d.id())).reversed()
+                    .thenComparing(Document::date, Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(Document::id, Comparator.reverseOrder()));
+
+            List<Long> ids = new ArrayList<>(matches.size());
+            for (Document document : matches) {
+                ids.add(document.id());
+            }
+            return ids;
+        }
+    }
+
+    private record Document(Long id, String type, LocalDateTime date) {}
+
+    private record Pending(Long id, String type, String subject, String notes, LocalDateTime date) {}
+}
@@ -0,0 +1,370 @@
+package com.crm.service;
+
+import com.crm.repository.OutboundEmailRepository;
+import com.crm.util.LatencyHistogram;
+import com.crm.util.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the outbound_emails queue. A single dispatcher thread claims due rows with a lease, splits them across
+ * a pool of sender threads that each send their share over one pooled SMTP connection, then records the outcome
+ * of every row in one batch. Failed sends are retried with exponential backoff up to {@code mail.outbox.max-attempts};
+ * rejected addresses fail immediately. Sends across all workers are paced by {@code mail.outbox.max-per-second} to
+ * stay under the provider's sending limits.
+ *
+ * <p>Claiming is a single UPDATE, so several nodes can run dispatchers against the same table without sending a
+ * row twice. A node that dies mid-batch leaves its rows SENDING until the lease expires, after which they are
+ * claimed again; delivery is therefore at least once.
+ */
+@Service
+public class MailOutboxDispatcher {
+
+    private static final String RECLAIM_SQL =
+            "UPDATE outbound_emails SET status = 'PENDING', claim_token = NULL, locked_until = NULL "
+            + "WHERE status = 'SENDING' AND locked_until < ?";
+    // Account mail (priority 0) is claimed ahead of any campaign backlog
+    private static final String CLAIM_SQL =
+            "UPDATE outbound_emails SET status = 'SENDING', claim_token = ?, locked_until = ? "
+            + "WHERE status = 'PENDING' AND next_attempt_at <= ? "
+            + "ORDER BY priority, next_attempt_at, id LIMIT ?";
+    // Flags campaign mail whose campaign has been deleted, e.g. rows that were SENDING when it went and failed since
+    private static final String CLAIMED_SQL =
+            "SELECT o.id, o.recipient, o.subject, o.body, o.html, o.attempts, o.created_at, "
+            + "(o.campaign_id IS NOT NULL AND c.id IS NULL) AS orphaned "
+            + "FROM outbound_emails o LEFT JOIN email_campaign c ON c.id = o.campaign_id WHERE o.claim_token = ?";
+    private static final String DROP_SQL = "DELETE FROM outbound_emails WHERE id = ? AND claim_token = ?";
+    private static final String SENT_SQL =
+            "UPDATE outbound_emails SET status = 'SENT', attempts = ?, sent_at = ?, claim_token = NULL, locked_until = NULL, last_error = NULL "
+            + "WHERE id = ? AND claim_token = ?";
+    private static final String FAILED_SQL =
+            "UPDATE outbound_emails SET status = ?, attempts = ?, next_attempt_at = ?, claim_token = NULL, locked_until = NULL, last_error = ? "
+            + "WHERE id = ? AND claim_token = ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM outbound_emails WHERE status = 'SENT' AND sent_at < ? LIMIT 5000";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+    @Autowired
+    private SmtpConnectionPool connectionPool;
+    @Autowired
+    private OutboundEmailRepository outboundEmailRepository;
+
+    // Nodes with this off still enqueue mail; another node (or a later start) sends it
+    @Value("${mail.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.outbox.workers:4}")
+    private int workers;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+
+    @Value("${mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-base-ms:30000}")
+    private long retryBaseMs;
+
+    @Value("${mail.outbox.lease-ms:300000}")
+    private long leaseMs;
+
+    // Across all sender threads of this node; 0 disables pacing
+    @Value("${mail.outbox.max-per-second:10}")
+    private double maxPerSecond;
+
+    @Value("${mail.outbox.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${mail.outbox.from:noreply@crm-app.com}")
+    private String from;
+
+    private ExecutorService senders;
+    private Thread dispatcher;
+    private volatile boolean running;
+    private final Semaphore wakeups = new Semaphore(0);
+    private RateLimiter rateLimiter;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+    private record Claimed(long id, String recipient, String subject, String body, boolean html, int attempts, LocalDateTime createdAt) {}
+
+    private record Outcome(Claimed email, boolean sent, boolean permanent, String error) {}
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        rateLimiter = new RateLimiter(maxPerSecond);
+        AtomicInteger threadCount = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "mail-outbox");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        // Let the batch in flight finish and record its outcomes, so nothing already sent is sent again
+        wakeups.release();
+        dispatcher.join(TimeUnit.SECONDS.toMillis(30));
+        dispatcher.interrupt();
+        senders.shutdownNow();
+    }
+
+    // Called after a transaction that enqueued mail commits, so new mail goes out without waiting for the next poll
+    public void wakeUp() {
+        if (running) {
+            wakeups.release();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                // Keep going while batches come back full; the backlog is drained without poll delays
+                while (running && dispatchBatch() == batchSize * workers) {
+                    // next batch
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Mail outbox dispatch failed: " + e.getMessage());
+            }
+            try {
+                wakeups.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int dispatchBatch() throws InterruptedException {
+        String claimToken = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(RECLAIM_SQL, Timestamp.valueOf(now));
+        int claimed = jdbcTemplate.update(CLAIM_SQL, claimToken, Timestamp.valueOf(now.plus(Duration.ofMillis(leaseMs))),
+                Timestamp.valueOf(now), batchSize * workers);
+        if (claimed == 0) {
+            return 0;
+        }
+        List<Claimed> emails = new ArrayList<>(claimed);
+        List<Object[]> orphaned = new ArrayList<>();
+        jdbcTemplate.query(CLAIMED_SQL, rs -> {
+            if (rs.getBoolean("orphaned")) {
+                orphaned.add(new Object[] {rs.getLong("id"), claimToken});
+                return;
+            }
+            emails.add(new Claimed(
+                    rs.getLong("id"),
+                    rs.getString("recipient"),
+                    rs.getString("subject"),
+                    rs.getString("body"),
+                    rs.getBoolean("html"),
+                    rs.getInt("attempts"),
+                    rs.getTimestamp("created_at").toLocalDateTime()));
+        }, claimToken);
+        if (!orphaned.isEmpty()) {
+            jdbcTemplate.batchUpdate(DROP_SQL, orphaned);
+        }
+
+        List<Future<List<Outcome>>> futures = new ArrayList<>();
+        for (int worker = 0; worker < workers && worker < emails.size(); worker++) {
+            List<Claimed> share = new ArrayList<>();
+            for (int i = worker; i < emails.size(); i += workers) {
+                share.add(emails.get(i));
+            }
+            futures.add(senders.submit(() -> sendAll(share)));
+        }
+        List<Outcome> outcomes = new ArrayList<>(emails.size());
+        for (Future<List<Outcome>> future : futures) {
+            try {
+                outcomes.addAll(future.get());
+            } catch (ExecutionException e) {
+                // Rows of a share that crashed keep their lease and are retried once it expires
+                System.err.println("Mail sender failed: " + e.getCause());
+            }
+        }
+        recordOutcomes(outcomes, claimToken);
+        return claimed;
+    }
+
+    private List<Outcome> sendAll(List<Claimed> emails) {
+        List<Outcome> outcomes = new ArrayList<>(emails.size());
+        Transport transport = null;
+        try {
+            for (Claimed email : emails) {
+                try {
+                    rateLimiter.acquire();
+                } catch (InterruptedException e) {
+                    // Shutting down: rows not reached yet keep their lease and are sent after it expires
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                MimeMessage message;
+                try {
+                    message = toMessage(email);
+                } catch (MessagingException e) {
+                    outcomes.add(new Outcome(email, false, true, e.getMessage()));
+                    continue;
+                }
+                try {
+                    if (transport == null) {
+                        transport = connectionPool.borrow();
+                    }
+                    transport.sendMessage(message, message.getAllRecipients());
+                    outcomes.add(new Outcome(email, true, false, null));
+                } catch (SendFailedException e) {
+                    // The server refused the recipient; the connection itself is still usable
+                    boolean rejected = e.getInvalidAddresses() != null && e.getInvalidAddresses().length > 0;
+                    outcomes.add(new Outcome(email, false, rejected, e.getMessage()));
+                } catch (MessagingException | RuntimeException e) {
+                    outcomes.add(new Outcome(email, false, false, e.getMessage()));
+                    if (transport != null) {
+                        connectionPool.discard(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            if (transport != null) {
+                connectionPool.release(transport);
+            }
+        }
+        return outcomes;
+    }
+
+    private MimeMessage toMessage(Claimed email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, email.html(), "UTF-8");
+        helper.setFrom(from);
+        helper.setTo(email.recipient());
+        helper.setSubject(email.subject());
+        helper.setText(email.body() != null ? email.body() : "", email.html());
+        message.saveChanges();
+        return message;
+    }
+
+    private void recordOutcomes(List<Outcome> outcomes, String claimToken) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> sent = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+        for (Outcome outcome : outcomes) {
+            Claimed email = outcome.email();
+            int attempts = email.attempts() + 1;
+            if (outcome.sent()) {
+                sent.add(new Object[] {attempts, Timestamp.valueOf(now), email.id(), claimToken});
+                sentCount.incrementAndGet();
+                deliveryLatency.record(Duration.between(email.createdAt(), now).toNanos());
+                continue;
+            }
+            boolean giveUp = outcome.permanent() || attempts >= maxAttempts;
+            LocalDateTime nextAttempt = now.plus(Duration.ofMillis(retryBaseMs << Math.min(attempts - 1, 16)));
+            failed.add(new Object[] {giveUp ? "FAILED" : "PENDING", attempts, Timestamp.valueOf(nextAttempt),
+                    truncate(outcome.error()), email.id(), claimToken});
+            if (giveUp) {
+                failedCount.incrementAndGet();
+                System.err.println("Giving up on email " + email.id() + " to " + email.recipient() + ": " + outcome.error());
+            } else {
+                retriedCount.incrementAndGet();
+            }
+        }
+        if (!sent.isEmpty()) {
+            jdbcTemplate.batchUpdate(SENT_SQL, sent);
+        }
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(FAILED_SQL, failed);
+        }
+    }
+
+    // Sent rows are only kept for troubleshooting; FAILED rows stay until someone looks at them
+    @Scheduled(fixedDelayString = "${mail.outbox.purge-interval-ms:3600000}")
+    public void purgeSent() {
+        if (!enabled) {
+            return;
+        }
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        while (jdbcTemplate.update(PURGE_SQL, cutoff) == 5000) {
+            // keep deleting in small chunks so no single statement holds locks for long
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    public long getQueueDepth() {
+        return outboundEmailRepository.countByStatusIn(List.of("PENDING", "SENDING"));
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    // Time from enqueue to accepted by the SMTP server
+    public long getDeliveryLatencyP50Ms() {
+        return deliveryLatency.percentileMicros(50) / 1000;
+    }
+
+    public long getDeliveryLatencyP99Ms() {
+        return deliveryLatency.percentileMicros(99) / 1000;
+    }
+}
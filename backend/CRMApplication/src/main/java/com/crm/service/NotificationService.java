@@ -0,0 +1,122 @@
+package com.crm.service;
+
+import com.crm.dto.CursorPage;
+import com.crm.dto.NotificationDTO;
+import com.crm.model.Notification;
+import com.crm.model.User;
+import com.crm.repository.NotificationRepository;
+import com.crm.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates notifications and pushes them to /user/{id}/queue/notifications once they are committed, so clients no
+ * longer poll the table. Unread counts are cached per user in memory: loaded with one COUNT, adjusted by every
+ * create and mark-read committed on this node, and reloaded after a short while so that creates and mark-reads on
+ * other nodes show up within the cache period.
+ */
+@Service
+public class NotificationService {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${notifications.unread-cache-ttl-ms:30000}")
+    private long unreadCacheTtlMs;
+
+    private record Unread(AtomicLong count, long loadedAt) {}
+
+    private final Map<Long, Unread> unreadCounts = new ConcurrentHashMap<>();
+
+    public NotificationDTO notify(User user, String message) {
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setMessage(message);
+        Notification saved = notificationRepository.save(notification);
+
+        Long userId = user.getId();
+        NotificationDTO dto = new NotificationDTO(saved.getId(), saved.getMessage(), false, saved.getCreatedAt());
+        // Neither the count nor the client may see a notification whose transaction could still roll back
+        afterCommit(() -> {
+            Unread unread = unreadCounts.get(userId);
+            if (unread != null) {
+                unread.count().incrementAndGet();
+            }
+            try {
+                messagingTemplate.convertAndSendToUser(String.valueOf(userId), "/queue/notifications", dto);
+            } catch (Exception e) {
+                // The notification is stored either way; the client picks it up from the feed
+                System.err.println("Could not push notification to user " + userId + ". Error: " + e.getMessage());
+            }
+        });
+        return dto;
+    }
+
+    public long getUnreadCount(Long userId) {
+        long now = System.currentTimeMillis();
+        Unread unread = unreadCounts.get(userId);
+        if (unread == null || now - unread.loadedAt() >= unreadCacheTtlMs) {
+            // Counted outside the map, so a slow COUNT does not hold up other users' entries
+            unread = new Unread(new AtomicLong(notificationRepository.countUnread(userId)), now);
+            unreadCounts.put(userId, unread);
+        }
+        return unread.count().get();
+    }
+
+    public CursorPage<NotificationDTO> getFeed(Long userId, String cursor, int size) {
+        KeysetCursor from = KeysetCursor.decode(cursor);
+        List<NotificationDTO> rows = notificationRepository.findFeedBefore(userId, from.timestamp(), from.id(), PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, notification -> new KeysetCursor(notification.getCreatedAt(), notification.getId()));
+    }
+
+    /**
+     * Marks the given notifications as read, or all of them when {@code ids} is null. Returns the number changed.
+     */
+    public int markRead(Long userId, Collection<Long> ids) {
+        int updated;
+        if (ids == null) {
+            updated = notificationRepository.markAllRead(userId);
+        } else if (ids.isEmpty()) {
+            return 0;
+        } else {
+            updated = notificationRepository.markRead(userId, ids);
+        }
+        afterCommit(() -> {
+            Unread unread = unreadCounts.get(userId);
+            if (unread != null) {
+                unread.count().updateAndGet(count -> Math.max(0, count - updated));
+            }
+        });
+        return updated;
+    }
+
+    public void userRemoved(Long userId) {
+        unreadCounts.remove(userId);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.crm.service;
+
+import com.crm.model.EmailCampaign;
+import com.crm.repository.EmailCampaignRepository;
+import com.crm.util.HierarchicalTimingWheel;
+import com.crm.util.HierarchicalTimingWheel.Timeout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts campaigns with status "scheduled" at their scheduledAt time. Upcoming campaigns sit in an in-memory
+ * {@link HierarchicalTimingWheel} that is advanced once a tick, so waiting costs nothing per campaign and the
+ * table is not polled. The wheel is filled from the database at startup, updated directly when an admin creates,
+ * edits or deletes a campaign on this node, and re-synced every few minutes to pick up changes made on other nodes.
+ *
+ * <p>Every node's wheel fires for every scheduled campaign. When it does, the row is read again and a campaign
+ * moved later goes back on the wheel; otherwise a {@link CampaignLease} that only matches a campaign still
+ * "scheduled" for a time already reached decides which node actually sends it.
+ */
+@Service
+public class ScheduledCampaignDispatcher {
+
+    @Autowired
+    private EmailCampaignRepository emailCampaignRepository;
+    @Autowired
+    private CampaignSendEngine campaignSendEngine;
+    @Autowired
+    private CampaignLease campaignLease;
+
+    @Value("${campaign.scheduler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${campaign.scheduler.tick-ms:1000}")
+    private long tickMs;
+
+    // Four levels of 64 slots at one-second ticks cover about 194 days; later campaigns wait in the overflow list
+    @Value("${campaign.scheduler.levels:4}")
+    private int levels;
+
+    private HierarchicalTimingWheel<Long> wheel;
+    private final Map<Long, Timeout<Long>> timeouts = new ConcurrentHashMap<>();
+    private Thread ticker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new HierarchicalTimingWheel<>(tickMs, levels, System.currentTimeMillis());
+        resync();
+        running = true;
+        ticker = new Thread(this::tickLoop, "campaign-scheduler");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        ticker.interrupt();
+        ticker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Puts a campaign on the wheel, replacing any earlier entry, or takes it off when it is no longer scheduled.
+     * Inside a transaction this happens after commit, so the campaign cannot fire before its row is visible.
+     */
+    public void track(EmailCampaign campaign) {
+        if (!enabled) {
+            return;
+        }
+        Long campaignId = campaign.getId();
+        boolean scheduled = "scheduled".equals(campaign.getStatus()) && campaign.getScheduledAt() != null;
+        long deadline = scheduled ? toMillis(campaign) : 0;
+        Runnable apply = () -> {
+            if (scheduled) {
+                schedule(campaignId, deadline);
+            } else {
+                cancel(campaignId);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    public void cancel(Long campaignId) {
+        Timeout<Long> previous = timeouts.remove(campaignId);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    // Safety net for campaigns created, moved or deleted on other nodes; the wheel, not this, does the timing
+    @Scheduled(fixedDelayString = "${campaign.scheduler.resync-interval-ms:300000}",
+               initialDelayString = "${campaign.scheduler.resync-interval-ms:300000}")
+    public void resync() {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> stillScheduled = new HashSet<>();
+        for (EmailCampaign campaign : emailCampaignRepository.findByStatus("scheduled")) {
+            if (campaign.getScheduledAt() != null) {
+                stillScheduled.add(campaign.getId());
+                schedule(campaign.getId(), toMillis(campaign));
+            }
+        }
+        timeouts.keySet().retainAll(stillScheduled);
+    }
+
+    public int getScheduledCount() {
+        return timeouts.size();
+    }
+
+    private void schedule(Long campaignId, long deadlineMillis) {
+        timeouts.compute(campaignId, (id, previous) -> {
+            if (previous != null && previous.getDeadlineMillis() == deadlineMillis && !previous.isCancelled()) {
+                return previous;
+            }
+            if (previous != null) {
+                previous.cancel();
+            }
+            return wheel.schedule(id, deadlineMillis);
+        });
+    }
+
+    private void tickLoop() {
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                TimeUnit.MILLISECONDS.sleep(tickMs - now % tickMs);
+                List<Timeout<Long>> due = wheel.advance(System.currentTimeMillis());
+                for (Timeout<Long> timeout : due) {
+                    // A campaign rescheduled or cancelled since it was filed has a different entry (or none) by now
+                    if (timeouts.remove(timeout.getItem(), timeout)) {
+                        fire(timeout.getItem());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Campaign scheduler tick failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void fire(Long campaignId) {
+        try {
+            // The wheel may still hold the old time of a campaign moved later on another node since the last resync
+            EmailCampaign campaign = emailCampaignRepository.findById(campaignId).orElse(null);
+            if (campaign == null || !"scheduled".equals(campaign.getStatus()) || campaign.getScheduledAt() == null) {
+                return;
+            }
+            long deadline = toMillis(campaign);
+            if (deadline > System.currentTimeMillis()) {
+                schedule(campaignId, deadline);
+                return;
+            }
+            // Fails on every node but one, and on all of them if the campaign was edited since it was read
+            if (!campaignLease.acquireDue(campaignId, LocalDateTime.now())) {
+                return;
+            }
+            // Conditional on the campaign still being scheduled under this node's lease, so an edit made since
+            // the lease was taken is never overwritten and a campaign put back to draft is not sent
+            if (!campaignSendEngine.startLeased(campaignId)) {
+                System.err.println("Scheduled campaign " + campaignId + " was not started: it was changed or has no body.");
+                campaignLease.release(campaignId);
+                return;
+            }
+            System.out.println("Scheduled campaign " + campaignId + " started.");
+        } catch (RuntimeException e) {
+            System.err.println("Could not start scheduled campaign " + campaignId + ": " + e.getMessage());
+            campaignLease.release(campaignId);
+        }
+    }
+
+    private static long toMillis(EmailCampaign campaign) {
+        return campaign.getScheduledAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,114 @@
+package com.crm.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps authenticated SMTP connections open between sends. JavaMailSender opens, authenticates and closes a
+ * connection for every send call, which costs several round trips (and a TLS handshake) per message; borrowing
+ * a live {@link Transport} from here pays that once per connection instead.
+ *
+ * <p>A borrowed transport belongs to one thread until it is released or discarded. Idle connections are reused
+ * most-recent-first and closed after {@code mail.smtp-pool.max-idle-ms}, before the server drops them itself.
+ */
+@Service
+public class SmtpConnectionPool {
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    @Value("${mail.smtp-pool.max-idle:4}")
+    private int maxIdle;
+
+    @Value("${mail.smtp-pool.max-idle-ms:60000}")
+    private long maxIdleMs;
+
+    private final ConcurrentLinkedDeque<IdleTransport> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    private record IdleTransport(Transport transport, long since) {}
+
+    public Transport borrow() throws MessagingException {
+        IdleTransport candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - candidate.since() < maxIdleMs && candidate.transport().isConnected()) {
+                reused.incrementAndGet();
+                return candidate.transport();
+            }
+            closeQuietly(candidate.transport());
+        }
+        return open();
+    }
+
+    public void release(Transport transport) {
+        if (transport.isConnected() && idle.size() < maxIdle) {
+            idle.offerFirst(new IdleTransport(transport, System.currentTimeMillis()));
+        } else {
+            closeQuietly(transport);
+        }
+    }
+
+    // For a transport that failed mid-send; its connection state is unknown so it is never reused
+    public void discard(Transport transport) {
+        closeQuietly(transport);
+    }
+
+    @Scheduled(fixedDelayString = "${mail.smtp-pool.max-idle-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<IdleTransport> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            IdleTransport entry = iterator.next();
+            if (now - entry.since() >= maxIdleMs && idle.removeFirstOccurrence(entry)) {
+                closeQuietly(entry.transport());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        IdleTransport entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closeQuietly(entry.transport());
+        }
+    }
+
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    private Transport open() throws MessagingException {
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+        Transport transport = mailSender.getSession().getTransport(protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        opened.incrementAndGet();
+        return transport;
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            // already broken; nothing else to release
+        }
+    }
+}
@@ -3,23 +3,26 @@ package com.crm.service.impl;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import java.util.HashMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.crm.dto.UserInteractionCountDTO;
+import com.crm.config.SessionSettings;
+import com.crm.config.WebSocketMetrics;
+import com.crm.dto.CampaignDeliveryDTO;
+import com.crm.dto.CursorPage;
+import com.crm.exception.CampaignNotEditableException;
+import com.crm.exception.InvalidCampaignException;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.model.CustomerCampaign;
 import com.crm.model.EmailCampaign;
 import com.crm.model.Interaction;
-import com.crm.model.Notification;
 import com.crm.model.Role;
 import com.crm.model.Settings;
 import com.crm.model.User;
@@ -30,8 +33,21 @@ import com.crm.repository.InteractionRepository;
 import com.crm.repository.NotificationRepository;
 import com.crm.repository.SettingsRepository;
 import com.crm.repository.UserRepository;
+import com.crm.security.TokenCache;
+import com.crm.security.UserVersionRegistry;
+import com.crm.service.AdminAnalyticsStore;
 import com.crm.service.AdminService;
+import com.crm.service.CampaignSendEngine;
+import com.crm.service.ChatKeyRotationJob;
+import com.crm.service.ChatService;
+import com.crm.service.ChatWriteBehindQueue;
 import com.crm.service.EmailService;
+import com.crm.service.InteractionLeaderboard;
+import com.crm.service.InteractionSearchIndex;
+import com.crm.service.MailOutboxDispatcher;
+import com.crm.service.NotificationService;
+import com.crm.service.ScheduledCampaignDispatcher;
+import com.crm.util.KeysetCursor;
 
 @Service
 @Transactional
@@ -45,12 +61,33 @@ public class AdminServiceImpl implements AdminService {
     @Autowired private PasswordEncoder passwordEncoder;
     @Autowired private SettingsRepository settingsRepository;
     @Autowired private EmailService emailService;
+    @Autowired private SessionSettings sessionSettings;
+    @Autowired private TokenCache tokenCache;
+    @Autowired private UserVersionRegistry userVersions;
+    @Autowired private AdminAnalyticsStore analyticsStore;
+    @Autowired private InteractionLeaderboard leaderboard;
+    @Autowired private InteractionSearchIndex searchIndex;
+    @Autowired private ChatService chatService;
+    @Autowired private ChatWriteBehindQueue chatWriteBehindQueue;
+    @Autowired private ChatKeyRotationJob chatKeyRotationJob;
+    @Autowired private MailOutboxDispatcher mailOutboxDispatcher;
+    @Autowired private CampaignSendEngine campaignSendEngine;
+    @Autowired private ScheduledCampaignDispatcher scheduledCampaignDispatcher;
+    @Autowired private WebSocketMetrics webSocketMetrics;
+    @Autowired private NotificationService notificationService;
 
     @Override
     public Page<User> getAllCustomers(Pageable pageable) {
         return userRepository.findByRole(Role.ROLE_CUSTOMER, pageable);
     }
 
+    @Override
+    public CursorPage<User> scrollCustomers(String cursor, int size) {
+        KeysetCursor from = KeysetCursor.decode(cursor);
+        List<User> rows = userRepository.findByRoleBefore(Role.ROLE_CUSTOMER, from.timestamp(), from.id(), PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, user -> new KeysetCursor(user.getJoinDate(), user.getId()));
+    }
+
     @Override
     public User addCustomer(User customer) {
         if (customer.getPassword() == null || customer.getPassword().isEmpty()) {
@@ -60,7 +97,9 @@ public class AdminServiceImpl implements AdminService {
         customer.setPassword(passwordEncoder.encode(customer.getPassword()));
         customer.setStatus(UserStatus.ACTIVE);
         customer.setJoinDate(LocalDateTime.now());
-        return userRepository.save(customer);
+        User savedCustomer = userRepository.save(customer);
+        analyticsStore.customerAdded(savedCustomer);
+        return savedCustomer;
     }
 
     @Override
@@ -69,6 +108,12 @@ public class AdminServiceImpl implements AdminService {
             .filter(user -> user.getRole() == Role.ROLE_CUSTOMER)
             .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
         
+        if (customer.getStatus() != customerDetails.getStatus()
+                || !customer.getUsername().equals(customerDetails.getUsername())) {
+            revokeSessions(customer);
+        }
+        analyticsStore.customerStatusChanged(customer.getStatus(), customerDetails.getStatus());
+        leaderboard.customerRenamed(customer.getId(), customerDetails.getUsername());
         customer.setUsername(customerDetails.getUsername());
         customer.setEmail(customerDetails.getEmail());
         customer.setPhone(customerDetails.getPhone());
@@ -87,17 +132,29 @@ public class AdminServiceImpl implements AdminService {
             .filter(user -> user.getRole() == Role.ROLE_CUSTOMER)
             .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
 
-        interactionRepository.deleteByCustomerId(id);
+        int deletedInteractions = interactionRepository.deleteByCustomerId(id);
         notificationRepository.deleteByUserId(id);
         customerCampaignRepository.deleteByCustomerId(id);
 
         userRepository.delete(customer);
+        analyticsStore.customerRemoved(customer, deletedInteractions);
+        leaderboard.customerRemoved(id);
+        searchIndex.customerRemoved(id);
+        notificationService.userRemoved(id);
+        revokeSessions(customer);
     }
     
     @Override
     public Page<User> getPendingCustomers(Pageable pageable) {
         return userRepository.findByRoleAndStatus(Role.ROLE_CUSTOMER, UserStatus.PENDING, pageable);
     }
+
+    @Override
+    public CursorPage<User> scrollPendingCustomers(String cursor, int size) {
+        KeysetCursor from = KeysetCursor.decode(cursor);
+        List<User> rows = userRepository.findByRoleAndStatusBefore(Role.ROLE_CUSTOMER, UserStatus.PENDING, from.timestamp(), from.id(), PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, user -> new KeysetCursor(user.getJoinDate(), user.getId()));
+    }
     
     @Override
     public User approveCustomer(Long customerId) {
@@ -107,6 +164,8 @@ public class AdminServiceImpl implements AdminService {
         
         customer.setStatus(UserStatus.ACTIVE);
         User updatedCustomer = userRepository.save(customer);
+        analyticsStore.customerStatusChanged(UserStatus.PENDING, UserStatus.ACTIVE);
+        revokeSessions(updatedCustomer);
         
         String subject = "Your Account has been Approved!";
         String htmlBody = buildAccountApprovalEmail(updatedCustomer.getUsername());
@@ -123,6 +182,8 @@ public class AdminServiceImpl implements AdminService {
         
         String customerEmail = customer.getEmail();
         userRepository.delete(customer);
+        analyticsStore.customerRemoved(customer, 0);
+        revokeSessions(customer);
 
         String htmlContent = "<html><body><h2>Account Update</h2><p>We regret to inform you that your registration for the CRM Portal has been rejected.</p><img src='https://as2.ftcdn.net/jpg/16/89/36/13/1000_F_1689361346_oEbH0YOaWwkpPDqyttMbJ66hPCQ1siIM.jpg' alt='Rejected' width='400'/></body></html>";
         emailService.sendSimpleMessage(customerEmail, "Account Update", htmlContent);
@@ -133,6 +194,13 @@ public class AdminServiceImpl implements AdminService {
         return interactionRepository.findByAdminStatus("PENDING", pageable);
     }
 
+    @Override
+    public CursorPage<Interaction> scrollPendingInteractions(String cursor, int size) {
+        KeysetCursor from = KeysetCursor.decode(cursor);
+        List<Interaction> rows = interactionRepository.findByAdminStatusBefore("PENDING", from.timestamp(), from.id(), PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, interaction -> new KeysetCursor(interaction.getDate(), interaction.getId()));
+    }
+
     @Override
     public Interaction updateInteractionStatus(Long interactionId, String status) {
         Interaction interaction = interactionRepository.findById(interactionId)
@@ -141,36 +209,22 @@ public class AdminServiceImpl implements AdminService {
         interaction.setAdminStatus(status.toUpperCase());
         Interaction updatedInteraction = interactionRepository.save(interaction);
 
-        Notification notification = new Notification();
-        notification.setUser(interaction.getCustomer());
         String message = String.format("Admin has updated the status of your interaction '%s' to: %s", interaction.getSubject(), status.toLowerCase());
-        notification.setMessage(message);
-        notificationRepository.save(notification);
+        notificationService.notify(interaction.getCustomer(), message);
 
         return updatedInteraction;
     }
 
     @Override
     public Map<String, Object> getAdminAnalytics() {
+        // Counters and monthly growth come from the in-memory rollup, not from GROUP BY queries
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalCustomers", userRepository.countByRole(Role.ROLE_CUSTOMER));
-        stats.put("activeCustomers", userRepository.countByRoleAndStatus(Role.ROLE_CUSTOMER, UserStatus.ACTIVE));
-        stats.put("totalInteractions", interactionRepository.count());
+        stats.put("totalCustomers", analyticsStore.getTotalCustomers());
+        stats.put("activeCustomers", analyticsStore.getActiveCustomers());
+        stats.put("totalInteractions", analyticsStore.getTotalInteractions());
         stats.put("conversionRate", 68); // Placeholder
-
-        List<Object[]> monthlyCounts = userRepository.countCustomersByMonth();
-        List<Map<String, Object>> customerGrowthData = monthlyCounts.stream()
-            .map(row -> {
-                Map<String, Object> dataPoint = new HashMap<>();
-                dataPoint.put("date", row[0] + "-" + String.format("%02d", row[1]));
-                dataPoint.put("count", row[2]);
-                return dataPoint;
-            })
-            .collect(Collectors.toList());
-        stats.put("customerGrowth", customerGrowthData);
-        
-        List<UserInteractionCountDTO> leaderboard = userRepository.findTopCustomersByInteractions(PageRequest.of(0, 10));
-        stats.put("leaderboard", leaderboard);
+        stats.put("customerGrowth", analyticsStore.getCustomerGrowth());
+        stats.put("leaderboard", leaderboard.getTop());
 
         return stats;
     }
@@ -182,29 +236,96 @@ public class AdminServiceImpl implements AdminService {
 
     @Override
     public EmailCampaign createCampaign(EmailCampaign campaign) {
+        String status = campaign.getStatus() != null ? campaign.getStatus() : "draft";
+        requireEditableStatus(status);
+        // Only what an admin edits is taken from the request; progress and delivery are the send engine's
+        campaign.setId(null);
         campaign.setCreatedAt(LocalDateTime.now());
-        if (campaign.getStatus() == null) {
-            campaign.setStatus("draft");
+        campaign.setSentAt(null);
+        campaign.setRecipients(0);
+        campaign.setLastRecipientId(0L);
+        campaign.setRecipientsQueued(false);
+        campaign.setDeliveredCount(null);
+        campaign.setFailedCount(null);
+        // A campaign created as sent is saved as a draft and handed to the send engine like any other
+        campaign.setStatus("sent".equals(status) ? "draft" : status);
+        requireScheduleTime(campaign);
+        EmailCampaign saved = emailCampaignRepository.save(campaign);
+        if ("sent".equals(status)) {
+            return campaignSendEngine.send(saved);
         }
-        return emailCampaignRepository.save(campaign);
+        scheduledCampaignDispatcher.track(saved);
+        return saved;
     }
 
     @Override
     public EmailCampaign updateCampaign(Long id, EmailCampaign campaignDetails) {
-        EmailCampaign campaign = emailCampaignRepository.findById(id)
+        // Locked, so the campaign cannot start sending on this or another node between the check and the save
+        EmailCampaign campaign = emailCampaignRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Email Campaign not found: " + id));
-        
+        // Saving the whole entity would overwrite the progress columns the send engine is updating
+        if (!CampaignSendEngine.isSendable(campaign)) {
+            throw new CampaignNotEditableException("Email Campaign " + id + " is " + campaign.getStatus() + " and can no longer be edited.");
+        }
+        if (campaignDetails.getStatus() != null) {
+            requireEditableStatus(campaignDetails.getStatus());
+        }
+
         campaign.setName(campaignDetails.getName());
         campaign.setSubject(campaignDetails.getSubject());
-        campaign.setStatus(campaignDetails.getStatus());
-        return emailCampaignRepository.save(campaign);
+        if (campaignDetails.getBody() != null) {
+            campaign.setBody(campaignDetails.getBody());
+        }
+        if (campaignDetails.getScheduledAt() != null) {
+            campaign.setScheduledAt(campaignDetails.getScheduledAt());
+        }
+        EmailCampaign saved;
+        // Marking a campaign sent hands it to the send engine; it becomes "sent" once delivery has finished
+        if ("sent".equals(campaignDetails.getStatus())) {
+            saved = campaignSendEngine.send(campaign);
+        } else {
+            if (campaignDetails.getStatus() != null) {
+                campaign.setStatus(campaignDetails.getStatus());
+            }
+            requireScheduleTime(campaign);
+            saved = emailCampaignRepository.save(campaign);
+        }
+        scheduledCampaignDispatcher.track(saved);
+        return saved;
+    }
+
+    // "sending" is only ever set by the send engine; asking for "sent" starts it
+    private static void requireEditableStatus(String status) {
+        if (!"draft".equals(status) && !"scheduled".equals(status) && !"sent".equals(status)) {
+            throw new InvalidCampaignException("A campaign can only be set to draft, scheduled or sent, not " + status + ".");
+        }
+    }
+
+    private static void requireScheduleTime(EmailCampaign campaign) {
+        if ("scheduled".equals(campaign.getStatus()) && campaign.getScheduledAt() == null) {
+            throw new InvalidCampaignException("A scheduled campaign needs a scheduledAt time.");
+        }
+    }
+
+    @Override
+    public EmailCampaign sendCampaign(Long id) {
+        EmailCampaign campaign = campaignSendEngine.send(id);
+        scheduledCampaignDispatcher.cancel(id);
+        return campaign;
+    }
+
+    @Override
+    public CampaignDeliveryDTO getCampaignDelivery(Long id) {
+        return campaignSendEngine.getDelivery(id);
     }
 
     @Override
     public void deleteCampaign(Long id) {
-        if (!emailCampaignRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Email Campaign not found: " + id);
-        }
+        // Held until commit: a chunk being queued either lands before the discard or finds the campaign gone
+        emailCampaignRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Email Campaign not found: " + id));
+        scheduledCampaignDispatcher.cancel(id);
+        campaignSendEngine.discardPending(id);
         emailCampaignRepository.deleteById(id);
     }
 
@@ -221,13 +342,12 @@ public class AdminServiceImpl implements AdminService {
         campaign.setStatus(status.toUpperCase());
         campaign.setReviewedAt(LocalDateTime.now());
         
-        Notification notification = new Notification();
-        notification.setUser(campaign.getCustomer());
+        CustomerCampaign saved = customerCampaignRepository.save(campaign);
+
         String message = String.format("Your campaign proposal '%s' has been %s by the admin.", campaign.getTitle(), status.toLowerCase());
-        notification.setMessage(message);
-        notificationRepository.save(notification);
+        notificationService.notify(campaign.getCustomer(), message);
 
-        return customerCampaignRepository.save(campaign);
+        return saved;
     }
 
     @Override
@@ -272,9 +392,52 @@ public class AdminServiceImpl implements AdminService {
     @Override
     public Settings updateSystemSettings(Settings settings) {
         settings.setId(1L); 
-        return settingsRepository.save(settings);
+        Settings savedSettings = settingsRepository.save(settings);
+        sessionSettings.refreshAfterCommit(savedSettings);
+        return savedSettings;
+    }
+
+    @Override
+    public Map<String, Object> getSystemMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("settingsRefreshCount", sessionSettings.getRefreshCount());
+        metrics.put("settingsStalenessMs", sessionSettings.getStalenessMillis());
+        metrics.put("tokenCacheSize", tokenCache.size());
+        metrics.put("tokenCacheHits", tokenCache.getHits());
+        metrics.put("tokenCacheMisses", tokenCache.getMisses());
+        metrics.put("analyticsReconcileCount", analyticsStore.getReconcileCount());
+        metrics.put("searchIndexedCustomers", searchIndex.getIndexedCustomers());
+        metrics.put("chatQueueDepth", chatWriteBehindQueue.getQueueDepth());
+        metrics.put("chatPersistedCount", chatWriteBehindQueue.getPersistedCount());
+        metrics.put("chatRejectedCount", chatWriteBehindQueue.getRejectedCount());
+        metrics.put("chatJournalSyncs", chatWriteBehindQueue.getJournalSyncs());
+        metrics.put("chatAvgPersistLagMs", chatWriteBehindQueue.getAveragePersistLagMs());
+        metrics.put("chatMaxPersistLagMs", chatWriteBehindQueue.getMaxPersistLagMs());
+        metrics.put("chatAvgDeliveryLagMicros", chatWriteBehindQueue.getAverageDeliveryLagMicros());
+        metrics.put("chatMessagesReencrypted", chatKeyRotationJob.getReencryptedCount());
+        metrics.put("chatMessagesUnreadable", chatKeyRotationJob.getSkippedCount());
+        metrics.put("chatKeyRotationFinished", chatKeyRotationJob.isFinished());
+        metrics.put("websocketActiveSessions", webSocketMetrics.getActiveSessions());
+        metrics.put("websocketEvictedSessions", webSocketMetrics.getEvictedSessions());
+        metrics.put("websocketRejectedMessages", webSocketMetrics.getRejectedMessages());
+        metrics.put("websocketChannels", webSocketMetrics.getChannelStats());
+        metrics.put("mailQueueDepth", mailOutboxDispatcher.getQueueDepth());
+        metrics.put("mailSentCount", mailOutboxDispatcher.getSentCount());
+        metrics.put("mailRetriedCount", mailOutboxDispatcher.getRetriedCount());
+        metrics.put("mailFailedCount", mailOutboxDispatcher.getFailedCount());
+        metrics.put("mailLatencyP50Ms", mailOutboxDispatcher.getDeliveryLatencyP50Ms());
+        metrics.put("mailLatencyP99Ms", mailOutboxDispatcher.getDeliveryLatencyP99Ms());
+        metrics.put("campaignsScheduled", scheduledCampaignDispatcher.getScheduledCount());
+        return metrics;
     }
     
+    // Invalidates every outstanding token of the user, both in the verified-token cache and by version
+    private void revokeSessions(User user) {
+        tokenCache.invalidateUser(user.getUsername());
+        userVersions.bump(user.getId());
+        chatService.forgetUser(user.getId());
+    }
+
     private String buildAccountApprovalEmail(String username) {
         return "<!DOCTYPE html>" +
                "<html lang='en'>" +
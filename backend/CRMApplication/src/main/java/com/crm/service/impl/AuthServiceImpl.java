@@ -9,6 +9,7 @@ import com.crm.model.User;
 import com.crm.model.User.UserStatus;
 import com.crm.repository.UserRepository;
 import com.crm.security.JwtUtil;
+import com.crm.service.AdminAnalyticsStore;
 import com.crm.service.AuthService;
 import com.crm.service.EmailService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +31,7 @@ public class AuthServiceImpl implements AuthService {
     @Autowired private AuthenticationManager authenticationManager;
     @Autowired private JwtUtil jwtUtil;
     @Autowired private EmailService emailService;
+    @Autowired private AdminAnalyticsStore analyticsStore;
 
     @Override
     public User registerUser(UserDto userDto) {
@@ -45,6 +47,7 @@ public class AuthServiceImpl implements AuthService {
         user.setJoinDate(LocalDateTime.now());
         
         User savedUser = userRepository.save(user);
+        analyticsStore.customerAdded(savedUser);
 
         // Send confirmation email
         emailService.sendSimpleMessage(
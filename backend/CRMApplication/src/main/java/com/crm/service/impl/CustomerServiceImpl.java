@@ -1,5 +1,6 @@
 package com.crm.service.impl;
 
+import com.crm.dto.CursorPage;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.model.CustomerCampaign;
 import com.crm.model.EmailCampaign;
@@ -9,19 +10,38 @@ import com.crm.repository.CustomerCampaignRepository;
 import com.crm.repository.EmailCampaignRepository;
 import com.crm.repository.InteractionRepository;
 import com.crm.repository.UserRepository;
+import com.crm.security.CurrentUser;
+import com.crm.service.AdminAnalyticsStore;
 import com.crm.service.CustomerService;
+import com.crm.service.InteractionLeaderboard;
+import com.crm.service.InteractionSearchIndex;
+import com.crm.util.KeysetCursor;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,6 +53,28 @@ public class CustomerServiceImpl implements CustomerService {
     @Autowired private EmailCampaignRepository emailCampaignRepository;
     @Autowired private CustomerCampaignRepository customerCampaignRepository;
     @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private CurrentUser currentUser;
+    @Autowired private AdminAnalyticsStore analyticsStore;
+    @Autowired private InteractionLeaderboard leaderboard;
+    @Autowired private ExecutorService analyticsExecutor;
+    @Autowired private InteractionSearchIndex searchIndex;
+
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private static final long ANALYTICS_BACKSTOP_MS = 1000;
+
+    @Value("${analytics.query-timeout-ms:2000}")
+    private long analyticsQueryTimeoutMs;
+
+    private TransactionTemplate analyticsTransaction;
+
+    @PostConstruct
+    public void init() {
+        analyticsTransaction = new TransactionTemplate(transactionManager);
+        analyticsTransaction.setReadOnly(true);
+        // Transaction timeouts are whole seconds
+        analyticsTransaction.setTimeout((int) Math.max(1, (analyticsQueryTimeoutMs + 999) / 1000));
+    }
 
     @Override
     public User findUserByUsername(String username) {
@@ -42,6 +84,10 @@ public class CustomerServiceImpl implements CustomerService {
 
     @Override
     public User getCustomerById(Long id) {
+        // Customers only ever access their own record, which the request has usually loaded already
+        if (currentUser.is(id)) {
+            return currentUser.get();
+        }
         return userRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
     }
@@ -69,37 +115,66 @@ public class CustomerServiceImpl implements CustomerService {
         userRepository.save(customer);
     }
 
+    // No transaction here: the request thread would otherwise hold a pooled connection while waiting for the workers
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> getCustomerAnalytics(Long customerId) {
         User customer = getCustomerById(customerId);
-        Map<String, Object> analyticsData = new HashMap<>();
-        
-        long totalInteractions = interactionRepository.countByCustomer(customer);
-        List<CustomerCampaign> submittedCampaigns = customerCampaignRepository.findByCustomerId(customerId);
-        analyticsData.put("totalInteractions", totalInteractions);
-        analyticsData.put("submittedCampaignsCount", submittedCampaigns.size());
-        analyticsData.put("approvedCampaignsCount", submittedCampaigns.stream().filter(c -> "APPROVED".equals(c.getStatus())).count());
+        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
+        List<String> degraded = new CopyOnWriteArrayList<>();
 
-        analyticsData.put("interactionsByType", interactionRepository.countInteractionsByType(customer));
+        // The queries are independent, so they run concurrently; a slow or failing one is reported as degraded
+        CompletableFuture<Long> totalInteractions = fetch("totalInteractions", () -> interactionRepository.countByCustomer(customer), null, degraded);
+        CompletableFuture<Long> submittedCampaigns = fetch("submittedCampaignsCount", () -> customerCampaignRepository.countByCustomerId(customerId), null, degraded);
+        CompletableFuture<Long> approvedCampaigns = fetch("approvedCampaignsCount", () -> customerCampaignRepository.countByCustomerIdAndStatus(customerId, "APPROVED"), null, degraded);
+        CompletableFuture<List<Map<String, Object>>> interactionsByType = fetch("interactionsByType", () -> interactionRepository.countInteractionsByType(customer), List.of(), degraded);
+        CompletableFuture<List<Object[]>> dailyCounts = fetch("interactionTrend", () -> interactionRepository.countInteractionsPerDay(customer, thirtyDaysAgo), List.of(), degraded);
 
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        List<Object[]> dailyCounts = interactionRepository.countInteractionsPerDay(customer, thirtyDaysAgo);
-        Map<LocalDate, Long> dailyCountsMap = dailyCounts.stream()
+        Map<String, Object> analyticsData = new HashMap<>();
+        // Counts that could not be read are null rather than a misleading zero
+        analyticsData.put("totalInteractions", totalInteractions.join());
+        analyticsData.put("submittedCampaignsCount", submittedCampaigns.join());
+        analyticsData.put("approvedCampaignsCount", approvedCampaigns.join());
+        analyticsData.put("interactionsByType", interactionsByType.join());
+
+        Map<LocalDate, Long> dailyCountsMap = dailyCounts.join().stream()
             .collect(Collectors.toMap(
                 row -> ((java.sql.Date) row[0]).toLocalDate(),
                 row -> (Long) row[1]
             ));
         analyticsData.put("interactionTrend", dailyCountsMap);
+        analyticsData.put("degraded", List.copyOf(degraded));
+        analyticsData.put("partial", !degraded.isEmpty());
         
         return analyticsData;
     }
 
+    /**
+     * Runs one dashboard query on the analytics pool inside a read-only transaction whose timeout becomes the JDBC
+     * statement timeout, so the database cancels a slow query instead of it running on after we gave up. The
+     * future's own timeout is only a backstop for time spent waiting for a connection.
+     */
+    private <T> CompletableFuture<T> fetch(String metric, Supplier<T> query, T fallback, List<String> degraded) {
+        return CompletableFuture.supplyAsync(() -> analyticsTransaction.execute(status -> query.get()), analyticsExecutor)
+                .orTimeout(analyticsQueryTimeoutMs + ANALYTICS_BACKSTOP_MS, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    System.err.println("Analytics query " + metric + " failed or timed out. Error: " + e.getMessage());
+                    degraded.add(metric);
+                    return fallback;
+                });
+    }
+
     @Override
     public Page<Interaction> getInteractionsForCustomer(Long customerId, String type, String searchTerm, Pageable pageable) {
         User customer = getCustomerById(customerId);
         boolean hasType = type != null && !type.isEmpty() && !type.equalsIgnoreCase("all");
         boolean hasSearchTerm = searchTerm != null && !searchTerm.isEmpty();
 
+        if (hasSearchTerm && !InteractionSearchIndex.tokenize(searchTerm).isEmpty()) {
+            return searchInteractions(customerId, hasType ? type : null, searchTerm, pageable);
+        }
+
+        // Search terms without any word characters fall back to the substring queries
         if (hasType && hasSearchTerm) {
             return interactionRepository.findByCustomerAndTypeContaining(customer, type, searchTerm, pageable);
         } else if (hasSearchTerm) {
@@ -111,6 +186,43 @@ public class CustomerServiceImpl implements CustomerService {
         }
     }
 
+    @Override
+    public CursorPage<Interaction> scrollInteractionsForCustomer(Long customerId, String type, String cursor, int size) {
+        KeysetCursor from = KeysetCursor.decode(cursor);
+        boolean hasType = type != null && !type.isEmpty() && !type.equalsIgnoreCase("all");
+        List<Interaction> rows = hasType
+                ? interactionRepository.findByCustomerIdAndTypeBefore(customerId, type, from.timestamp(), from.id(), PageRequest.of(0, size + 1))
+                : interactionRepository.findByCustomerIdBefore(customerId, from.timestamp(), from.id(), PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, interaction -> new KeysetCursor(interaction.getDate(), interaction.getId()));
+    }
+
+    // Ranked ids come from the in-memory index; only the requested page is loaded from the database
+    private Page<Interaction> searchInteractions(Long customerId, String type, String searchTerm, Pageable pageable) {
+        if (pageable.getSort().isSorted() && !InteractionSearchIndex.canSort(pageable.getSort())) {
+            // Sorting on a column the index does not hold: the database orders and pages the matches
+            List<Long> matchIds = searchIndex.search(customerId, type, searchTerm, Sort.unsorted());
+            if (matchIds.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            return interactionRepository.findByCustomerIdAndIdIn(customerId, matchIds, pageable);
+        }
+        List<Long> rankedIds = searchIndex.search(customerId, type, searchTerm, pageable.getSort());
+        List<Long> pageIds = rankedIds;
+        if (pageable.isPaged()) {
+            int from = (int) Math.min(pageable.getOffset(), rankedIds.size());
+            int to = Math.min(from + pageable.getPageSize(), rankedIds.size());
+            pageIds = rankedIds.subList(from, to);
+        }
+
+        Map<Long, Interaction> byId = interactionRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Interaction::getId, interaction -> interaction));
+        List<Interaction> content = pageIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, rankedIds.size());
+    }
+
     @Override
     public List<EmailCampaign> getCampaignsForCustomer(Long customerId) {
         return emailCampaignRepository.findAll();
@@ -123,7 +235,11 @@ public class CustomerServiceImpl implements CustomerService {
         interaction.setDate(LocalDateTime.now());
         interaction.setAdminStatus("PENDING");
         interaction.setCustomerStatus("PENDING");
-        return interactionRepository.save(interaction);
+        Interaction savedInteraction = interactionRepository.save(interaction);
+        analyticsStore.interactionAdded();
+        leaderboard.interactionAdded(customer);
+        searchIndex.interactionAdded(savedInteraction);
+        return savedInteraction;
     }
 
     @Override
@@ -154,8 +270,7 @@ public class CustomerServiceImpl implements CustomerService {
     
     @Override
     public List<Interaction> getInteractionsForCalendar(Long customerId, LocalDateTime startDate, LocalDateTime endDate) {
-        User customer = userRepository.findById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
+        User customer = getCustomerById(customerId);
         return interactionRepository.findByCustomerAndDateBetween(customer, startDate, endDate);
     }
 }
\ No newline at end of file
@@ -1,49 +1,59 @@
 package com.crm.service.impl;
 
+import com.crm.model.OutboundEmail;
+import com.crm.repository.OutboundEmailRepository;
 import com.crm.service.EmailService;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.crm.service.MailOutboxDispatcher;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+/**
+ * Queues mail in the outbound_emails table instead of talking to SMTP on the request thread. When called inside
+ * a transaction the row commits or rolls back with the caller's changes, so a rolled-back registration never sends
+ * its confirmation. {@link MailOutboxDispatcher} does the actual sending.
+ */
 @Service
 public class EmailServiceImpl implements EmailService {
 
     @Autowired
-    private JavaMailSender emailSender;
+    private OutboundEmailRepository outboundEmailRepository;
+
+    @Autowired
+    private MailOutboxDispatcher mailOutboxDispatcher;
 
     @Override
     public void sendSimpleMessage(String to, String subject, String text) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom("noreply@crm-app.com");
-            message.setTo(to);
-            message.setSubject(subject);
-            message.setText(text);
-            emailSender.send(message);
-        } catch (Exception e) {
-            System.err.println("Error while sending simple email: " + e.getMessage());
-        }
+        enqueue(to, subject, text, false);
     }
 
-    // NEW IMPLEMENTATION for sending HTML emails
     @Override
     public void sendHtmlMessage(String to, String subject, String htmlBody) {
-        MimeMessage message = emailSender.createMimeMessage();
-        try {
-            // Use MimeMessageHelper to build a multipart message for HTML content
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom("noreply@crm-app.com");
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlBody, true); // Set the second parameter to 'true' to indicate HTML
-            emailSender.send(message);
-        } catch (MessagingException e) {
-            // Using a proper logger is recommended in a real application
-            System.err.println("Error while sending HTML email: " + e.getMessage());
+        enqueue(to, subject, htmlBody, true);
+    }
+
+    private void enqueue(String to, String subject, String body, boolean html) {
+        if (to == null || to.isBlank()) {
+            System.err.println("Not sending email without a recipient: " + subject);
+            return;
+        }
+        OutboundEmail email = new OutboundEmail();
+        email.setRecipient(to);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setHtml(html);
+        outboundEmailRepository.save(email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mailOutboxDispatcher.wakeUp();
+                }
+            });
+        } else {
+            mailOutboxDispatcher.wakeUp();
         }
     }
 }
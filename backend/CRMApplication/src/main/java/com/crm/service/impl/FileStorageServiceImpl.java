@@ -1,45 +1,73 @@
 package com.crm.service.impl;
 
 import com.crm.dto.SecureFileDTO;
+import com.crm.dto.SecureFileDownload;
 import com.crm.exception.ResourceNotFoundException;
 import com.crm.model.SecureFile;
 import com.crm.model.User;
 import com.crm.repository.SecureFileRepository;
-import com.crm.repository.UserRepository;
+import com.crm.security.CurrentUser;
 import com.crm.service.FileStorageService;
-import com.crm.util.CryptoUtil;
+import com.crm.util.CryptoEngine;
+import com.crm.util.SegmentedCipher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.crypto.SecretKey;
+import java.io.BufferedInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
+/**
+ * Files use envelope encryption: the content is encrypted with a random per-file data key, and only that key
+ * is encrypted ("wrapped") with a key derived from the user's PIN. Changing the PIN therefore rewraps a few
+ * bytes per file instead of re-encrypting the content. Files stored before envelope encryption (no wrapped key)
+ * are migrated on the next PIN reset.
+ */
 @Service
 public class FileStorageServiceImpl implements FileStorageService {
 
+    private static final int SALT_LENGTH = 16;
+
     private final Path fileStorageLocation;
-    
+
     @Autowired
     private SecureFileRepository secureFileRepository;
 
     @Autowired
-    private UserRepository userRepository;
-    
+    private CurrentUser currentUser;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    // Threads used to re-encrypt legacy files during a PIN reset
+    @Value("${file.reencrypt.parallelism:4}")
+    private int reencryptParallelism;
+
     @Autowired
     public FileStorageServiceImpl(@Value("${file.upload-dir}") String uploadDir) {
         this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
@@ -49,26 +77,32 @@ public class FileStorageServiceImpl implements FileStorageService {
             throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
         }
     }
-    
+
     private User getCurrentUser() {
-        UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        return currentUser.get();
     }
 
     @Override
     public void uploadFile(MultipartFile file, String pin) throws Exception {
         User currentUser = getCurrentUser();
-        
-        // Encrypt the file content with the user's PIN
-        byte[] encryptedData = CryptoUtil.encrypt(pin, file.getBytes());
+
+        // All of a user's files share one key salt, so a PIN reset derives the PIN key only once
+        byte[] salt = secureFileRepository.findFirstByUserAndKeySaltIsNotNull(currentUser)
+                .map(existing -> Base64.getDecoder().decode(existing.getKeySalt()))
+                .orElseGet(FileStorageServiceImpl::newSalt);
+        SecretKey dataKey = CryptoEngine.newKey();
 
         // Generate a unique filename to prevent collisions
         String storedFileName = UUID.randomUUID().toString() + "-" + file.getOriginalFilename() + ".enc";
         Path targetLocation = this.fileStorageLocation.resolve(storedFileName);
 
-        // Save the encrypted file to disk
-        Files.write(targetLocation, encryptedData);
+        // Stream the multipart content through the cipher straight to disk, one segment in memory at a time
+        writeAtomically(targetLocation, out -> {
+            try (InputStream in = file.getInputStream();
+                 OutputStream encrypted = SegmentedCipher.encrypt(out, dataKey, new byte[0])) {
+                in.transferTo(encrypted);
+            }
+        });
 
         // Save file metadata to the database
         SecureFile secureFile = new SecureFile();
@@ -77,37 +111,43 @@ public class FileStorageServiceImpl implements FileStorageService {
         secureFile.setFileType(file.getContentType());
         secureFile.setStoredFileName(storedFileName);
         secureFile.setPinHash(passwordEncoder.encode(pin)); // Store a hash of the PIN
-        secureFileRepository.save(secureFile);
+        secureFile.setKeySalt(Base64.getEncoder().encodeToString(salt));
+        secureFile.setWrappedKey(wrapKey(dataKey, derivePinKey(pin, salt)));
+        try {
+            secureFileRepository.save(secureFile);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(targetLocation);
+            throw e;
+        }
     }
 
     @Override
-    public Resource downloadFile(Long fileId, String pin) throws Exception {
+    public SecureFileDownload downloadFile(Long fileId, String pin) throws Exception {
         User currentUser = getCurrentUser();
         SecureFile secureFile = secureFileRepository.findByIdAndUser(fileId, currentUser)
                 .orElseThrow(() -> new ResourceNotFoundException("File not found or access denied."));
-        
+
         // Verify the provided PIN against the stored hash
         if (!passwordEncoder.matches(pin, secureFile.getPinHash())) {
             throw new SecurityException("Incorrect PIN.");
         }
 
-        // Read the encrypted file from disk
         Path filePath = this.fileStorageLocation.resolve(secureFile.getStoredFileName()).normalize();
-        byte[] encryptedData = Files.readAllBytes(filePath);
+        if (secureFile.getWrappedKey() == null && !isSegmented(filePath)) {
+            // Legacy whole-file ECB: still streamed, but the plaintext length is not known up front
+            return new SecureFileDownload(secureFile.getFileName(), secureFile.getFileType(), -1,
+                    offset -> legacyDecryptingStream(filePath, pin));
+        }
 
-        // Decrypt the file content
-        byte[] decryptedData = CryptoUtil.decrypt(pin, encryptedData);
-        
-        // Create a temporary file to serve the decrypted content
-        Path tempFile = Files.createTempFile("decrypted-", secureFile.getFileName());
-        Files.write(tempFile, decryptedData);
-        
-        Resource resource = new UrlResource(tempFile.toUri());
-        if (resource.exists()) {
-            return resource;
-        } else {
-            throw new RuntimeException("File not found " + secureFile.getFileName());
+        SegmentedCipher.Header header;
+        long size;
+        try (SeekableByteChannel channel = Files.newByteChannel(filePath, StandardOpenOption.READ)) {
+            header = SegmentedCipher.readHeader(channel);
+            size = channel.size();
         }
+        SecretKey key = contentKey(secureFile, header, pin);
+        return new SecureFileDownload(secureFile.getFileName(), secureFile.getFileType(), header.plaintextLength(size),
+                offset -> SegmentedCipher.decrypt(Files.newByteChannel(filePath, StandardOpenOption.READ), header, key, offset));
     }
 
     @Override
@@ -124,7 +164,7 @@ public class FileStorageServiceImpl implements FileStorageService {
         User currentUser = getCurrentUser();
         SecureFile secureFile = secureFileRepository.findByIdAndUser(fileId, currentUser)
                 .orElseThrow(() -> new ResourceNotFoundException("File not found or access denied."));
-                
+
         if (!passwordEncoder.matches(pin, secureFile.getPinHash())) {
             throw new SecurityException("Incorrect PIN.");
         }
@@ -136,7 +176,12 @@ public class FileStorageServiceImpl implements FileStorageService {
         // Delete record from database
         secureFileRepository.delete(secureFile);
     }
-    
+
+    /**
+     * Envelope-encrypted files only get their data key rewrapped. Legacy files are re-encrypted in parallel into
+     * new files; the database is switched to the new files in one save, and only then are the old files deleted,
+     * so a crash at any point leaves every record pointing at a complete file it can decrypt.
+     */
     @Override
     public void resetPin(String oldPin, String newPin) throws Exception {
         User currentUser = getCurrentUser();
@@ -146,17 +191,207 @@ public class FileStorageServiceImpl implements FileStorageService {
             throw new SecurityException("Incorrect old PIN or no files found.");
         }
 
+        // One BCrypt hash and one key derivation for the new PIN, shared by every file
+        String newPinHash = passwordEncoder.encode(newPin);
+        byte[] newSalt = newSalt();
+        SecretKey newPinKey = derivePinKey(newPin, newSalt);
+        String newKeySalt = Base64.getEncoder().encodeToString(newSalt);
+        Map<String, SecretKey> oldPinKeys = new HashMap<>();
+
+        List<SecureFile> legacyFiles = new ArrayList<>();
         for (SecureFile file : files) {
-            // Re-encrypt each file with the new PIN
-            Path filePath = this.fileStorageLocation.resolve(file.getStoredFileName()).normalize();
-            byte[] encryptedData = Files.readAllBytes(filePath);
-            byte[] decryptedData = CryptoUtil.decrypt(oldPin, encryptedData);
-            byte[] reEncryptedData = CryptoUtil.encrypt(newPin, decryptedData);
-            Files.write(filePath, reEncryptedData);
-
-            // Update the PIN hash in the database
-            file.setPinHash(passwordEncoder.encode(newPin));
-            secureFileRepository.save(file);
+            if (file.getWrappedKey() == null) {
+                legacyFiles.add(file);
+                continue;
+            }
+            // Files normally share a salt, so this derives the old PIN key once
+            SecretKey oldPinKey = oldPinKeys.get(file.getKeySalt());
+            if (oldPinKey == null) {
+                oldPinKey = derivePinKey(oldPin, Base64.getDecoder().decode(file.getKeySalt()));
+                oldPinKeys.put(file.getKeySalt(), oldPinKey);
+            }
+            file.setWrappedKey(wrapKey(unwrapKey(file.getWrappedKey(), oldPinKey), newPinKey));
+        }
+
+        List<Migration> migrations = migrateLegacyFiles(legacyFiles, oldPin, newPinKey);
+        List<Path> replacedFiles = new ArrayList<>();
+        for (Migration migration : migrations) {
+            replacedFiles.add(this.fileStorageLocation.resolve(migration.file().getStoredFileName()).normalize());
+            migration.file().setStoredFileName(migration.storedFileName());
+            migration.file().setWrappedKey(migration.wrappedKey());
+        }
+        for (SecureFile file : files) {
+            file.setPinHash(newPinHash);
+            file.setKeySalt(newKeySalt);
+        }
+        try {
+            secureFileRepository.saveAll(files);
+        } catch (RuntimeException e) {
+            deleteMigrated(migrations);
+            throw e;
+        }
+        for (Path path : replacedFiles) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private record Migration(SecureFile file, String storedFileName, String wrappedKey) {}
+
+    private List<Migration> migrateLegacyFiles(List<SecureFile> legacyFiles, String oldPin, SecretKey newPinKey) throws Exception {
+        if (legacyFiles.isEmpty()) {
+            return List.of();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(reencryptParallelism, legacyFiles.size()));
+        try {
+            List<Future<Migration>> futures = new ArrayList<>();
+            for (SecureFile file : legacyFiles) {
+                futures.add(executor.submit(() -> migrate(file, oldPin, newPinKey)));
+            }
+            List<Migration> migrations = new ArrayList<>();
+            Exception failure = null;
+            for (Future<Migration> future : futures) {
+                try {
+                    migrations.add(future.get());
+                } catch (Exception e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                // Nothing has been committed yet; drop what was written and keep the originals
+                deleteMigrated(migrations);
+                throw failure;
+            }
+            return migrations;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Re-encrypts one legacy file under a fresh data key into a new stored file
+    private Migration migrate(SecureFile file, String oldPin, SecretKey newPinKey) throws IOException {
+        Path source = this.fileStorageLocation.resolve(file.getStoredFileName()).normalize();
+        String storedFileName = UUID.randomUUID().toString() + "-" + file.getFileName() + ".enc";
+        SecretKey dataKey = CryptoEngine.newKey();
+        writeAtomically(this.fileStorageLocation.resolve(storedFileName), out -> {
+            try (InputStream plain = openLegacyDecrypted(source, oldPin);
+                 OutputStream encrypted = SegmentedCipher.encrypt(out, dataKey, new byte[0])) {
+                plain.transferTo(encrypted);
+            }
+        });
+        return new Migration(file, storedFileName, wrapKey(dataKey, newPinKey));
+    }
+
+    private void deleteMigrated(List<Migration> migrations) throws IOException {
+        for (Migration migration : migrations) {
+            Files.deleteIfExists(this.fileStorageLocation.resolve(migration.storedFileName()).normalize());
+        }
+    }
+
+    private static SecretKey contentKey(SecureFile file, SegmentedCipher.Header header, String pin) throws IOException {
+        if (file.getWrappedKey() != null) {
+            return unwrapKey(file.getWrappedKey(), derivePinKey(pin, Base64.getDecoder().decode(file.getKeySalt())));
+        }
+        // Segmented file from before envelope encryption: the content key is derived from the PIN directly
+        return derivePinKey(pin, header.getSalt());
+    }
+
+    private static InputStream openLegacyDecrypted(Path filePath, String pin) throws IOException {
+        if (!isSegmented(filePath)) {
+            return legacyDecryptingStream(filePath, pin);
+        }
+        SeekableByteChannel channel = Files.newByteChannel(filePath, StandardOpenOption.READ);
+        try {
+            SegmentedCipher.Header header = SegmentedCipher.readHeader(channel);
+            return SegmentedCipher.decrypt(channel, header, derivePinKey(pin, header.getSalt()), 0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean isSegmented(Path filePath) throws IOException {
+        try (InputStream in = Files.newInputStream(filePath)) {
+            return SegmentedCipher.hasMagic(in);
+        }
+    }
+
+    private static InputStream legacyDecryptingStream(Path filePath, String pin) throws IOException {
+        try {
+            return CryptoEngine.legacyEcbDecryptingStream(pin, new BufferedInputStream(Files.newInputStream(filePath)));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not open legacy encrypted file", e);
+        }
+    }
+
+    private static byte[] newSalt() {
+        return CryptoEngine.randomBytes(SALT_LENGTH);
+    }
+
+    private static SecretKey derivePinKey(String pin, byte[] salt) {
+        return CryptoEngine.derivePinKey(pin, salt);
+    }
+
+    private static String wrapKey(SecretKey dataKey, SecretKey pinKey) throws IOException {
+        try {
+            return CryptoEngine.wrapKey(dataKey, pinKey);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not wrap file key", e);
+        }
+    }
+
+    private static SecretKey unwrapKey(String wrappedKey, SecretKey pinKey) {
+        try {
+            return CryptoEngine.unwrapKey(wrappedKey, pinKey);
+        } catch (GeneralSecurityException e) {
+            throw new SecurityException("Could not unwrap file key; the PIN does not match this file.");
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // Writes to a sibling temp file and moves it into place, so a crash never leaves a half-written file behind.
+    // The contents are forced to disk before the rename and the directory after it, so once this returns the
+    // new file survives a power loss too, not just a process crash
+    private static void writeAtomically(Path target, ContentWriter writer) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // Writers close the stream they are given; the channel has to stay open until it is forced
+                OutputStream out = new FilterOutputStream(Channels.newOutputStream(channel)) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        this.out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                };
+                writer.writeTo(out);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Windows cannot open a directory; NTFS journals the rename itself
+            return;
+        }
+        try (channel) {
+            channel.force(true);
         }
     }
 }
@@ -0,0 +1,125 @@
+package com.crm.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared AES-GCM primitives. Cipher instances are expensive to look up, so each thread keeps one and re-initialises
+ * it per call; keys derived from configured secrets are computed once and cached. The JDK's AES-GCM implementation
+ * uses the AES-NI and carry-less multiply intrinsics where the CPU has them, so no extra provider is needed.
+ *
+ * <p>Sealed layout: nonce (12) | ciphertext | tag (16). Streams of file data use {@link SegmentedCipher}, which keeps
+ * its own cipher for the lifetime of the stream instead of borrowing the thread's.
+ */
+public final class CryptoEngine {
+
+    public static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int PIN_KEY_ITERATIONS = 65536;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> GCM = ThreadLocal.withInitial(() -> newCipher("AES/GCM/NoPadding"));
+    private static final Map<String, SecretKey> SECRET_KEYS = new ConcurrentHashMap<>();
+
+    private CryptoEngine() {}
+
+    /**
+     * AES-256 key for a configured secret such as chat.encryption.key, derived with SHA-256 once and cached.
+     * Not for user PINs; those go through {@link #derivePinKey(String, byte[])}.
+     */
+    public static SecretKey secretKey(String secret) {
+        return SECRET_KEYS.computeIfAbsent(secret, s -> {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+                return new SecretKeySpec(digest, "AES");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        });
+    }
+
+    // Deliberately slow PBKDF2, so the result should be reused for every file a request touches
+    public static SecretKey derivePinKey(String pin, byte[] salt) {
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            byte[] key = factory.generateSecret(new PBEKeySpec(pin.toCharArray(), salt, PIN_KEY_ITERATIONS, 256)).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive PIN key", e);
+        }
+    }
+
+    public static SecretKey newKey() {
+        return new SecretKeySpec(randomBytes(32), "AES");
+    }
+
+    public static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    public static byte[] seal(SecretKey key, byte[] plaintext) throws GeneralSecurityException {
+        byte[] nonce = randomBytes(NONCE_LENGTH);
+        Cipher cipher = GCM.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+        byte[] sealed = Arrays.copyOf(nonce, NONCE_LENGTH + cipher.getOutputSize(plaintext.length));
+        cipher.doFinal(plaintext, 0, plaintext.length, sealed, NONCE_LENGTH);
+        return sealed;
+    }
+
+    public static byte[] open(SecretKey key, byte[] sealed) throws GeneralSecurityException {
+        Cipher cipher = GCM.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, NONCE_LENGTH));
+        return cipher.doFinal(sealed, NONCE_LENGTH, sealed.length - NONCE_LENGTH);
+    }
+
+    public static String sealString(SecretKey key, String plaintext) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(seal(key, plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String openString(SecretKey key, String sealed) throws GeneralSecurityException {
+        return new String(open(key, Base64.getDecoder().decode(sealed)), StandardCharsets.UTF_8);
+    }
+
+    public static String wrapKey(SecretKey dataKey, SecretKey wrappingKey) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(seal(wrappingKey, dataKey.getEncoded()));
+    }
+
+    public static SecretKey unwrapKey(String wrappedKey, SecretKey wrappingKey) throws GeneralSecurityException {
+        return new SecretKeySpec(open(wrappingKey, Base64.getDecoder().decode(wrappedKey)), "AES");
+    }
+
+    /**
+     * Decrypts a file written by the original AES/ECB scheme (SHA-1 of the PIN, first 128 bits) as a stream.
+     * Read-only: nothing is encrypted this way any more.
+     */
+    public static InputStream legacyEcbDecryptingStream(String pin, InputStream encryptedData) throws GeneralSecurityException {
+        byte[] key = Arrays.copyOf(MessageDigest.getInstance("SHA-1").digest(pin.getBytes(StandardCharsets.UTF_8)), 16);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"));
+        return new CipherInputStream(encryptedData, cipher);
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " is not available", e);
+        }
+    }
+}
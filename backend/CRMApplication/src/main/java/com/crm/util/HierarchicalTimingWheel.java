@@ -0,0 +1,138 @@
+package com.crm.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: {@code levels} wheels of 64 slots, where a slot on level n spans 64^n ticks.
+ * A timeout is filed on the lowest level whose range covers it and moves down a level each time the wheel above
+ * reaches its slot, so scheduling, cancelling and expiring are all O(1) however many timeouts are pending and
+ * however far out they are. Timeouts beyond the top level wait in an overflow list that is re-filed whenever
+ * the top wheel turns.
+ *
+ * <p>Time only moves in {@link #advance(long)}; nothing runs on its own. Thread-safe.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = WHEEL_SIZE - 1;
+
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long deadlineMillis, long deadlineTick) {
+            this.item = item;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getItem() { return item; }
+        public long getDeadlineMillis() { return deadlineMillis; }
+        public boolean isCancelled() { return cancelled; }
+
+        // Cancelled timeouts are dropped the next time the wheel touches their slot
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickMillis;
+    private final int levels;
+    private final List<List<Timeout<T>>[]> wheels = new ArrayList<>();
+    private final List<Timeout<T>> overflow = new ArrayList<>();
+    private final List<Timeout<T>> expired = new ArrayList<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMillis, int levels, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.currentTick = startMillis / tickMillis;
+        for (int level = 0; level < levels; level++) {
+            List<Timeout<T>>[] slots = new List[WHEEL_SIZE];
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                slots[slot] = new ArrayList<>();
+            }
+            wheels.add(slots);
+        }
+    }
+
+    /**
+     * Schedules {@code item} to expire at {@code deadlineMillis}; a deadline in the past expires on the next advance.
+     */
+    public synchronized Timeout<T> schedule(T item, long deadlineMillis) {
+        // Rounded up, so a timeout never expires before its deadline
+        Timeout<T> timeout = new Timeout<>(item, deadlineMillis, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        place(timeout);
+        return timeout;
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and returns the timeouts that are now due, skipping cancelled ones.
+     */
+    public synchronized List<Timeout<T>> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Upper wheels first, so anything they push down lands in a lower slot before that slot is read
+            for (int level = levels - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    if (level == levels - 1) {
+                        refile(overflow);
+                    }
+                    refile(wheels.get(level)[slotOf(currentTick, level)]);
+                }
+            }
+            if (levels == 1) {
+                refile(overflow);
+            }
+            List<Timeout<T>> slot = wheels.get(0)[slotOf(currentTick, 0)];
+            expired.addAll(slot);
+            slot.clear();
+        }
+        List<Timeout<T>> result = new ArrayList<>(expired.size());
+        for (Timeout<T> timeout : expired) {
+            if (!timeout.cancelled) {
+                result.add(timeout);
+            }
+        }
+        expired.clear();
+        return result;
+    }
+
+    private void refile(List<Timeout<T>> timeouts) {
+        if (timeouts.isEmpty()) {
+            return;
+        }
+        List<Timeout<T>> pending = new ArrayList<>(timeouts);
+        timeouts.clear();
+        for (Timeout<T> timeout : pending) {
+            if (!timeout.cancelled) {
+                place(timeout);
+            }
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        if (delta <= 0) {
+            expired.add(timeout);
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                wheels.get(level)[slotOf(timeout.deadlineTick, level)].add(timeout);
+                return;
+            }
+        }
+        overflow.add(timeout);
+    }
+
+    private static int slotOf(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+}
@@ -0,0 +1,81 @@
+package com.crm.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A campaign subject or body with {@code {{name}}} placeholders. The template is split into literal and placeholder
+ * parts once, so rendering it for each of many recipients is a single pass of appends. Values are HTML-escaped
+ * when the template is HTML; unknown placeholders render as empty.
+ */
+public final class MailTemplate {
+
+    private final String[] literals;
+    private final String[] placeholders;
+    private final boolean html;
+    private final int literalLength;
+
+    private MailTemplate(String[] literals, String[] placeholders, boolean html) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.html = html;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MailTemplate compile(String template, boolean html) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        String source = template != null ? template : "";
+        int position = 0;
+        while (true) {
+            int open = source.indexOf("{{", position);
+            int close = open < 0 ? -1 : source.indexOf("}}", open + 2);
+            if (close < 0) {
+                literals.add(source.substring(position));
+                break;
+            }
+            literals.add(source.substring(position, open));
+            placeholders.add(source.substring(open + 2, close).trim());
+            position = close + 2;
+        }
+        return new MailTemplate(literals.toArray(new String[0]), placeholders.toArray(new String[0]), html);
+    }
+
+    public String render(Map<String, String> values) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = new StringBuilder(literalLength + placeholders.length * 16);
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                appendValue(out, value);
+            }
+        }
+        return out.append(literals[placeholders.length]).toString();
+    }
+
+    private void appendValue(StringBuilder out, String value) {
+        if (!html) {
+            out.append(value);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+}
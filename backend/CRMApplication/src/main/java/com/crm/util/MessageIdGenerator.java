@@ -0,0 +1,67 @@
+package com.crm.util;
+
+/**
+ * Generates unique, time-ordered message ids without a database round trip.
+ * Layout: milliseconds since 2024-01-01 (41 bits) | node id (4 bits) | per-millisecond sequence (8 bits).
+ * Ids from different nodes never collide as long as each node is configured with its own node id.
+ *
+ * <p>The 53 bits keep every id within JavaScript's Number.MAX_SAFE_INTEGER until 2093, and keep the table's
+ * AUTO_INCREMENT (which MySQL moves past explicitly inserted ids) in that range too. At most 256 ids per
+ * millisecond are issued per node; callers past that wait for the next millisecond.
+ */
+public class MessageIdGenerator {
+
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 8;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    // A clock stepped back further than this is a misconfiguration rather than NTP slew; fail instead of stalling
+    private static final long MAX_CLOCK_REGRESSION_MS = 5000;
+
+    private final long nodeId;
+    private long lastMillis = -1;
+    private long sequence;
+
+    public MessageIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+        this.nodeId = nodeId;
+    }
+
+    public synchronized long next() {
+        long now = System.currentTimeMillis();
+        if (now < lastMillis) {
+            if (lastMillis - now > MAX_CLOCK_REGRESSION_MS) {
+                throw new IllegalStateException("Clock moved backwards by " + (lastMillis - now)
+                        + " ms; refusing to generate message ids");
+            }
+            // Reusing the last millisecond would eventually collide with ids already issued in it
+            now = waitUntilAfter(lastMillis - 1);
+        }
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                now = waitUntilAfter(lastMillis);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return ((now - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private static long waitUntilAfter(long millis) {
+        long now = System.currentTimeMillis();
+        while (now <= millis) {
+            try {
+                Thread.sleep(millis - now + 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next message id", e);
+            }
+            now = System.currentTimeMillis();
+        }
+        return now;
+    }
+}
@@ -0,0 +1,307 @@
+package com.crm.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Streaming authenticated encryption for stored files. The plaintext is cut into fixed-size segments and each
+ * segment is sealed with AES-GCM on its own, so encryption and decryption need one segment of memory regardless
+ * of file size, and any segment can be decrypted without reading the ones before it.
+ *
+ * <pre>
+ * header:  "CRMS" | version (1) | segment size (4) | salt length (1) | salt | nonce prefix (7)
+ * segment: AES-GCM(plaintext[segment size], nonce = prefix | segment index (4) | last flag (1), aad = header)
+ * </pre>
+ *
+ * The last-segment flag in the nonce makes truncation at a segment boundary detectable. The salt is opaque to
+ * this class; callers store whatever their key derivation needs there.
+ */
+public final class SegmentedCipher {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private static final byte[] MAGIC = {'C', 'R', 'M', 'S'};
+    private static final byte VERSION = 1;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int TAG_LENGTH = 16;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private SegmentedCipher() {}
+
+    public static final class Header {
+        private final int segmentSize;
+        private final byte[] salt;
+        private final byte[] noncePrefix;
+        private final byte[] encoded;
+
+        private Header(int segmentSize, byte[] salt, byte[] noncePrefix) {
+            this.segmentSize = segmentSize;
+            this.salt = salt;
+            this.noncePrefix = noncePrefix;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(segmentSize);
+                out.writeByte(salt.length);
+                out.write(salt);
+                out.write(noncePrefix);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            this.encoded = bytes.toByteArray();
+        }
+
+        public byte[] getSalt() { return salt.clone(); }
+        public int getSegmentSize() { return segmentSize; }
+        public int length() { return encoded.length; }
+
+        /**
+         * Plaintext size of a file of {@code ciphertextLength} bytes that starts with this header.
+         */
+        public long plaintextLength(long ciphertextLength) {
+            long body = ciphertextLength - encoded.length;
+            long fullSegment = segmentSize + TAG_LENGTH;
+            long remainder = body % fullSegment;
+            return (body / fullSegment) * segmentSize + (remainder == 0 ? 0 : remainder - TAG_LENGTH);
+        }
+    }
+
+    /**
+     * Returns true when the stream starts with the segmented format's magic bytes. Consumes those bytes.
+     */
+    public static boolean hasMagic(InputStream in) throws IOException {
+        byte[] magic = in.readNBytes(MAGIC.length);
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    public static Header readHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer fixed = readFully(channel, MAGIC.length + 1 + 4 + 1);
+        byte[] magic = new byte[MAGIC.length];
+        fixed.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || fixed.get() != VERSION) {
+            throw new IOException("Not a segmented encrypted file");
+        }
+        int segmentSize = fixed.getInt();
+        int saltLength = Byte.toUnsignedInt(fixed.get());
+        ByteBuffer rest = readFully(channel, saltLength + NONCE_PREFIX_LENGTH);
+        byte[] salt = new byte[saltLength];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        rest.get(salt).get(noncePrefix);
+        if (segmentSize <= 0) {
+            throw new IOException("Corrupt segmented file header");
+        }
+        return new Header(segmentSize, salt, noncePrefix);
+    }
+
+    /**
+     * Wraps {@code out} so that everything written is encrypted. The header is written immediately;
+     * closing the returned stream seals the last segment and closes {@code out}.
+     */
+    public static OutputStream encrypt(OutputStream out, SecretKey key, byte[] salt) throws IOException {
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        RANDOM.nextBytes(noncePrefix);
+        Header header = new Header(DEFAULT_SEGMENT_SIZE, salt, noncePrefix);
+        out.write(header.encoded);
+        return new EncryptingOutputStream(out, key, header);
+    }
+
+    /**
+     * Returns the plaintext from {@code offset} to the end. Only the segments from the one containing
+     * {@code offset} onwards are read; the channel is owned by the returned stream.
+     */
+    public static InputStream decrypt(SeekableByteChannel channel, Header header, SecretKey key, long offset) throws IOException {
+        try {
+            return new DecryptingInputStream(channel, header, key, offset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static Cipher newCipher() throws IOException {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM is not available", e);
+        }
+    }
+
+    private static GCMParameterSpec nonce(Header header, long segment, boolean last) {
+        byte[] nonce = new byte[12];
+        System.arraycopy(header.noncePrefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        ByteBuffer.wrap(nonce, NONCE_PREFIX_LENGTH, 5).putInt((int) segment).put((byte) (last ? 1 : 0));
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of encrypted file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static final class EncryptingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final SecretKey key;
+        private final Header header;
+        private final Cipher cipher;
+        private final byte[] plain;
+        private final byte[] sealed;
+        private int buffered;
+        private long segment;
+        private boolean closed;
+
+        EncryptingOutputStream(OutputStream out, SecretKey key, Header header) throws IOException {
+            this.out = out;
+            this.key = key;
+            this.header = header;
+            this.cipher = newCipher();
+            this.plain = new byte[header.segmentSize];
+            this.sealed = new byte[header.segmentSize + TAG_LENGTH];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                // A full segment is only sealed once more data arrives, so the last one is always known at close
+                if (buffered == plain.length) {
+                    seal(false);
+                }
+                int chunk = Math.min(len, plain.length - buffered);
+                System.arraycopy(b, off, plain, buffered, chunk);
+                buffered += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                seal(true);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, nonce(header, segment, last));
+                cipher.updateAAD(header.encoded);
+                int length = cipher.doFinal(plain, 0, buffered, sealed, 0);
+                out.write(sealed, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not encrypt file segment", e);
+            }
+            segment++;
+            buffered = 0;
+        }
+    }
+
+    private static final class DecryptingInputStream extends InputStream {
+        private final SeekableByteChannel channel;
+        private final Header header;
+        private final SecretKey key;
+        private final Cipher cipher;
+        private final ByteBuffer sealed;
+        private final byte[] plain;
+        private final long channelSize;
+        private long segment;
+        private int position;
+        private int available;
+        private boolean finished;
+
+        DecryptingInputStream(SeekableByteChannel channel, Header header, SecretKey key, long offset) throws IOException {
+            this.channel = channel;
+            this.header = header;
+            this.key = key;
+            this.cipher = newCipher();
+            this.sealed = ByteBuffer.allocate(header.segmentSize + TAG_LENGTH);
+            this.plain = new byte[header.segmentSize];
+            this.channelSize = channel.size();
+
+            this.segment = offset / header.segmentSize;
+            channel.position(header.length() + segment * (header.segmentSize + (long) TAG_LENGTH));
+            if (channel.position() >= channelSize && offset > 0) {
+                finished = true;
+                return;
+            }
+            fill();
+            position = Math.min(available, (int) (offset % header.segmentSize));
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == available) {
+                if (finished) {
+                    return -1;
+                }
+                fill();
+            }
+            int chunk = Math.min(len, available - position);
+            System.arraycopy(plain, position, b, off, chunk);
+            position += chunk;
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void fill() throws IOException {
+            sealed.clear();
+            while (sealed.hasRemaining() && channel.read(sealed) >= 0) {
+                // keep reading until the segment is complete or the file ends
+            }
+            sealed.flip();
+            boolean last = channel.position() >= channelSize;
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, nonce(header, segment, last));
+                cipher.updateAAD(header.encoded);
+                available = cipher.doFinal(sealed.array(), 0, sealed.limit(), plain, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encrypted file is corrupt, truncated or the key is wrong", e);
+            }
+            position = 0;
+            segment++;
+            finished = last;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.crm;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base for tests that need the real schema and MySQL-specific SQL. One container is started for the whole run
+ * and shared by every test class; the classes are skipped when Docker is not available. Background workers that
+ * would talk to SMTP or race the tests are switched off.
+ */
+@SpringBootTest(properties = {
+        "mail.outbox.enabled=false",
+        "campaign.scheduler.enabled=false",
+        "chat.encryption.rotation.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlIntegrationTest {
+
+    @ServiceConnection
+    protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0")
+            .withUrlParam("rewriteBatchedStatements", "true");
+
+    static {
+        MYSQL.start();
+    }
+}
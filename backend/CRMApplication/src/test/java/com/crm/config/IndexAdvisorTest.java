@@ -0,0 +1,281 @@
+package com.crm.config;
+
+import com.crm.MySqlIntegrationTest;
+import com.crm.model.Role;
+import com.crm.model.User;
+import com.crm.model.User.UserStatus;
+import com.crm.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.Container.ExecResult;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks query plans against a seeded MySQL. The repository check does not rely on hand-written SQL: it calls
+ * every query method of every repository with sample arguments, reads the statements Hibernate sent from the
+ * server's general log and explains each of them, so a new repository method is covered as soon as it exists.
+ */
+@TestPropertySource(properties = "index-advisor.enabled=true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndexAdvisorTest extends MySqlIntegrationTest {
+
+    private static final String[] TABLES = {
+            "users", "interaction", "chat_messages", "notifications", "customer_campaign",
+            "email_campaign", "outbound_emails", "secure_files"
+    };
+
+    @Autowired
+    private IndexAdvisor indexAdvisor;
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<Long> customerIds = new ArrayList<>();
+    private String conversationId;
+
+    @BeforeAll
+    void seed() throws Exception {
+        asRoot("SET GLOBAL log_output = 'TABLE'",
+                "SET GLOBAL general_log = 'ON'",
+                "GRANT SELECT ON mysql.general_log TO '" + MYSQL.getUsername() + "'@'%'");
+
+        // Enough rows, with a realistic mix of values, that the optimizer's choices mean something
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        LocalDateTime now = LocalDateTime.now();
+        UserStatus[] statuses = {UserStatus.ACTIVE, UserStatus.ACTIVE, UserStatus.ACTIVE, UserStatus.PENDING, UserStatus.REJECTED};
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Role role = i % 80 == 0 ? Role.ROLE_ADMIN : Role.ROLE_CUSTOMER;
+            users.add(new Object[] {run + "-user-" + i, "x", run + "-user-" + i + "@example.com", role.name(),
+                    statuses[i % statuses.length].name(), Timestamp.valueOf(now.minusDays(i % 700))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, email, role, status, join_date) VALUES (?, ?, ?, ?, ?, ?)", users);
+        customerIds.addAll(jdbcTemplate.queryForList("SELECT id FROM users WHERE username LIKE ? AND role = 'ROLE_CUSTOMER' ORDER BY id",
+                Long.class, run + "-user-%"));
+
+        String[] types = {"call", "email", "meeting"};
+        String[] adminStatuses = {"PENDING", "COMPLETED", "COMPLETED"};
+        List<Object[]> interactions = new ArrayList<>();
+        List<Object[]> notifications = new ArrayList<>();
+        List<Object[]> campaigns = new ArrayList<>();
+        List<Object[]> files = new ArrayList<>();
+        for (int c = 0; c < customerIds.size(); c++) {
+            Long customerId = customerIds.get(c);
+            for (int n = 0; n < 10; n++) {
+                interactions.add(new Object[] {customerId, types[n % types.length], "Follow up " + n, "Notes " + n,
+                        Timestamp.valueOf(now.minusDays((c + n) % 60)), adminStatuses[n % adminStatuses.length], "PENDING"});
+            }
+            for (int n = 0; n < 5; n++) {
+                notifications.add(new Object[] {customerId, "Notification " + n, n % 2 == 0, Timestamp.valueOf(now.minusHours(c + n))});
+            }
+            campaigns.add(new Object[] {customerId, "Campaign " + c, "Description", c % 4 == 0 ? "PENDING" : "APPROVED",
+                    Timestamp.valueOf(now.minusDays(c % 30))});
+            files.add(new Object[] {customerId, "file-" + c + ".pdf", "application/pdf", run + "-" + c + ".enc", "x",
+                    Timestamp.valueOf(now.minusDays(c % 30))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO interaction (customer_id, type, subject, notes, date, admin_status, customer_status) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", interactions);
+        jdbcTemplate.batchUpdate("INSERT INTO notifications (user_id, message, is_read, created_at) VALUES (?, ?, ?, ?)", notifications);
+        jdbcTemplate.batchUpdate("INSERT INTO customer_campaign (customer_id, title, description, status, submitted_at) "
+                + "VALUES (?, ?, ?, ?, ?)", campaigns);
+        jdbcTemplate.batchUpdate("INSERT INTO secure_files (user_id, file_name, file_type, stored_file_name, pin_hash, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", files);
+
+        List<Object[]> messages = new ArrayList<>();
+        for (int c = 0; c + 1 < customerIds.size() && c < 100; c += 2) {
+            long low = customerIds.get(c);
+            long high = customerIds.get(c + 1);
+            for (int n = 0; n < 20; n++) {
+                messages.add(new Object[] {n % 2 == 0 ? low : high, n % 2 == 0 ? high : low, low + ":" + high, "x",
+                        Timestamp.valueOf(now.minusMinutes(n)), false});
+            }
+        }
+        conversationId = customerIds.get(0) + ":" + customerIds.get(1);
+        jdbcTemplate.batchUpdate("INSERT INTO chat_messages (sender_id, recipient_id, conversation_id, encrypted_message, timestamp, is_read) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", messages);
+
+        // Only finished campaigns: the send engine's completion check would pick up anything still in progress
+        List<Object[]> emailCampaigns = new ArrayList<>();
+        List<Object[]> emails = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            emailCampaigns.add(new Object[] {run + " campaign " + i, "Subject", i % 2 == 0 ? "draft" : "sent", Timestamp.valueOf(now.minusDays(i))});
+        }
+        for (int i = 0; i < 1000; i++) {
+            emails.add(new Object[] {run + "-" + i + "@example.com", i % 10 == 0 ? "PENDING" : "SENT", i % 3,
+                    Timestamp.valueOf(now.plusMinutes(i % 60)), Timestamp.valueOf(now)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO email_campaign (name, subject, status, created_at, recipients_queued) VALUES (?, ?, ?, ?, false)", emailCampaigns);
+        jdbcTemplate.batchUpdate("INSERT INTO outbound_emails (recipient, status, html, priority, attempts, next_attempt_at, created_at) "
+                + "VALUES (?, ?, false, ?, 0, ?, ?)", emails);
+
+        for (String table : TABLES) {
+            jdbcTemplate.queryForList("ANALYZE TABLE " + table);
+        }
+    }
+
+    @AfterAll
+    void disableGeneralLog() throws Exception {
+        asRoot("SET GLOBAL general_log = 'OFF'");
+    }
+
+    @Test
+    void handWrittenHotQueriesUseAnIndex() {
+        assertEquals(List.of(), indexAdvisor.check());
+    }
+
+    @Test
+    void everyRepositoryQueryUsesAnIndex() {
+        List<String> problems = new ArrayList<>();
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+            for (Method method : information.getQueryMethods()) {
+                String name = information.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                List<String> statements = capture(method, repository);
+                if (statements.isEmpty()) {
+                    problems.add(name + " sent no SQL");
+                }
+                for (String sql : statements) {
+                    problems.addAll(indexAdvisor.explain(name, sql));
+                }
+            }
+        }
+        assertEquals(List.of(), problems);
+    }
+
+    // Runs the method in a transaction that is rolled back and returns the statements its connection sent
+    private List<String> capture(Method method, Object repository) {
+        List<String> statements = new ArrayList<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Long connectionId = jdbcTemplate.queryForObject("SELECT CONNECTION_ID()", Long.class);
+            Timestamp since = jdbcTemplate.queryForObject("SELECT NOW(6)", Timestamp.class);
+            try {
+                method.invoke(repository, sampleArguments(method));
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(method + " failed", e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            for (String sql : jdbcTemplate.queryForList("SELECT CONVERT(argument USING utf8mb4) FROM mysql.general_log "
+                    + "WHERE thread_id = ? AND command_type = 'Query' AND event_time >= ? ORDER BY event_time",
+                    String.class, connectionId, since)) {
+                String statement = sql.trim().toLowerCase(Locale.ROOT);
+                boolean isQuery = statement.startsWith("select") || statement.startsWith("update") || statement.startsWith("delete");
+                if (isQuery && !statement.contains("general_log") && !statement.contains("now(6)") && !statement.contains("@@")) {
+                    statements.add(sql);
+                }
+            }
+            status.setRollbackOnly();
+        });
+        return statements;
+    }
+
+    private Object[] sampleArguments(Method method) {
+        Parameter[] parameters = method.getParameters();
+        Object[] arguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            arguments[i] = sample(method, parameters[i]);
+        }
+        return arguments;
+    }
+
+    private Object sample(Method method, Parameter parameter) {
+        Class<?> type = parameter.getType();
+        Param param = parameter.getAnnotation(Param.class);
+        String name = param != null ? param.value() : parameter.getName();
+        Long customerId = customerIds.get(0);
+
+        if (type == Long.class || type == long.class) {
+            return name.toLowerCase(Locale.ROOT).contains("user") || name.toLowerCase(Locale.ROOT).contains("customer") ? customerId : 1000L;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 100;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return false;
+        }
+        if (type == String.class) {
+            return sampleString(name);
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now().minusDays(10);
+        }
+        if (type == Role.class) {
+            return Role.ROLE_CUSTOMER;
+        }
+        if (type == UserStatus.class) {
+            return UserStatus.ACTIVE;
+        }
+        if (type == User.class) {
+            return userRepository.findById(customerId).orElseThrow();
+        }
+        if (type == Pageable.class) {
+            return PageRequest.of(0, 20);
+        }
+        if (Collection.class.isAssignableFrom(type) && parameter.getParameterizedType() instanceof ParameterizedType generic) {
+            Object element = generic.getActualTypeArguments()[0];
+            if (element == Long.class) {
+                return List.of(customerId, 1000L, 1001L);
+            }
+            if (element == String.class) {
+                return List.of("PENDING", "SENDING");
+            }
+        }
+        throw new IllegalStateException("No sample value for parameter " + name + " of " + method
+                + "; add one to IndexAdvisorTest.sample");
+    }
+
+    private String sampleString(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.contains("conversation")) {
+            return conversationId;
+        }
+        if (lower.contains("status")) {
+            return "PENDING";
+        }
+        if (lower.contains("type")) {
+            return "call";
+        }
+        if (lower.contains("search")) {
+            return "follow";
+        }
+        return "admin";
+    }
+
+    private static void asRoot(String... statements) throws Exception {
+        ExecResult result = MYSQL.execInContainer("mysql", "-uroot", "-p" + MYSQL.getPassword(), "-e", String.join("; ", statements));
+        assertEquals(0, result.getExitCode(), result.getStderr());
+    }
+}
@@ -0,0 +1,133 @@
+package com.crm.security;
+
+import com.crm.MySqlIntegrationTest;
+import com.crm.exception.ResourceNotFoundException;
+import com.crm.model.Role;
+import com.crm.model.User;
+import com.crm.repository.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+class CurrentUserTest extends MySqlIntegrationTest {
+
+    // Records CurrentUser.getUserLoads() at the end of every request, while the request is still bound
+    @TestConfiguration
+    static class LoadRecorder implements WebMvcConfigurer {
+
+        static final List<Integer> LOADS = new CopyOnWriteArrayList<>();
+
+        @Autowired
+        private CurrentUser currentUser;
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(new HandlerInterceptor() {
+                @Override
+                public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                    LOADS.add(currentUser.getUserLoads());
+                }
+            });
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JwtUtil jwtUtil;
+    @Autowired
+    private CurrentUser currentUser;
+
+    private User customer;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        String name = "customer-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(name);
+        user.setPassword("not-used");
+        user.setEmail(name + "@example.com");
+        user.setRole(Role.ROLE_CUSTOMER);
+        user.setStatus(User.UserStatus.ACTIVE);
+        customer = userRepository.save(user);
+        token = "Bearer " + jwtUtil.generateToken(customer);
+        LoadRecorder.LOADS.clear();
+    }
+
+    @Test
+    void profileIsLoadedOncePerRequest() throws Exception {
+        mockMvc.perform(get("/api/customers/{id}", customer.getId()).header("Authorization", token))
+                .andExpect(status().isOk());
+        assertEquals(List.of(1), LoadRecorder.LOADS);
+    }
+
+    @Test
+    void profileUpdateLoadsTheUserOnce() throws Exception {
+        mockMvc.perform(put("/api/customers/{id}", customer.getId()).header("Authorization", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + customer.getUsername() + "@example.org\",\"age\":30}"))
+                .andExpect(status().isOk());
+        assertEquals(List.of(1), LoadRecorder.LOADS);
+    }
+
+    @Test
+    void addingAnInteractionLoadsTheUserOnce() throws Exception {
+        mockMvc.perform(post("/api/customers/{id}/interactions", customer.getId()).header("Authorization", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"CALL\",\"notes\":\"test\"}"))
+                .andExpect(status().isCreated());
+        assertEquals(List.of(1), LoadRecorder.LOADS);
+    }
+
+    @Test
+    void fileListLoadsTheUserOnce() throws Exception {
+        mockMvc.perform(get("/api/files").header("Authorization", token))
+                .andExpect(status().isOk());
+        assertEquals(List.of(1), LoadRecorder.LOADS);
+    }
+
+    @Test
+    void eachRequestLoadsItsOwnCopy() throws Exception {
+        mockMvc.perform(get("/api/customers/{id}", customer.getId()).header("Authorization", token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/customers/{id}", customer.getId()).header("Authorization", token))
+                .andExpect(status().isOk());
+        assertEquals(List.of(1, 1), LoadRecorder.LOADS);
+    }
+
+    @Test
+    void outsideARequestThereIsNoCurrentUser() {
+        // As seen from schedulers, @Async methods and STOMP handlers
+        assertFalse(currentUser.isAuthenticated());
+        assertNull(currentUser.getId());
+        assertFalse(currentUser.is(customer.getId()));
+        assertEquals(0, currentUser.getUserLoads());
+        assertThrows(ResourceNotFoundException.class, currentUser::get);
+    }
+}
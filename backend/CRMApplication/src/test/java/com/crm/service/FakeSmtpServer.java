@@ -0,0 +1,148 @@
+package com.crm.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Just enough of an SMTP server for the mail outbox tests: accepts every message except those to rejected
+ * recipients (550 at RCPT) and the next few messages it is told to fail (451 after DATA), and counts connections
+ * so tests can tell a reused connection from a new one. No AUTH or STARTTLS is offered.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    record Received(List<String> recipients, String data) {}
+
+    private final ServerSocket serverSocket;
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger transientFailures = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    FakeSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "fake-smtp");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    void reject(String recipient) {
+        rejected.add(recipient.toLowerCase(Locale.ROOT));
+    }
+
+    void failNextMessages(int count) {
+        transientFailures.set(count);
+    }
+
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    List<Received> receivedBy(String recipient) {
+        List<Received> matches = new ArrayList<>();
+        for (Received message : received) {
+            if (message.recipients().contains(recipient.toLowerCase(Locale.ROOT))) {
+                matches.add(message);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                Thread session = new Thread(() -> serve(socket), "fake-smtp-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 localhost fake ESMTP");
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 localhost");
+                } else if (command.startsWith("MAIL FROM")) {
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    String recipient = address(line);
+                    if (rejected.contains(recipient)) {
+                        reply(out, "550 5.1.1 No such user");
+                    } else {
+                        recipients.add(recipient);
+                        reply(out, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder data = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        data.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+                    }
+                    if (transientFailures.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                        reply(out, "451 4.3.0 Try again later");
+                    } else {
+                        received.add(new Received(List.copyOf(recipients), data.toString()));
+                        reply(out, "250 OK");
+                    }
+                    recipients.clear();
+                } else if (command.equals("RSET") || command.equals("NOOP")) {
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return line.substring(start + 1, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
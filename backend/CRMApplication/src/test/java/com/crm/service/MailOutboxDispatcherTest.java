@@ -0,0 +1,227 @@
+package com.crm.service;
+
+import com.crm.MySqlIntegrationTest;
+import com.crm.model.OutboundEmail;
+import com.crm.repository.OutboundEmailRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the mail outbox end to end against MySQL and an in-process SMTP server. One sender thread and a short
+ * retry base keep the timing of each scenario predictable.
+ */
+@TestPropertySource(properties = {
+        "mail.outbox.enabled=true",
+        "mail.outbox.workers=1",
+        "mail.outbox.poll-interval-ms=200",
+        "mail.outbox.retry-base-ms=1000",
+        "mail.outbox.max-attempts=3",
+        "mail.outbox.max-per-second=0",
+        "spring.mail.host=127.0.0.1",
+        "spring.mail.username=",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false"
+})
+@DirtiesContext
+class MailOutboxDispatcherTest extends MySqlIntegrationTest {
+
+    private static final long RETRY_BASE_MS = 1000;
+    private static final Duration WAIT = Duration.ofSeconds(20);
+
+    private static final FakeSmtpServer SMTP;
+
+    static {
+        try {
+            SMTP = new FakeSmtpServer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void smtpPort(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.port", SMTP::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        SMTP.close();
+    }
+
+    @Autowired
+    private EmailService emailService;
+    @Autowired
+    private OutboundEmailRepository outboundEmailRepository;
+    @Autowired
+    private SmtpConnectionPool connectionPool;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void queuedMailIsSentOverAReusedConnection() {
+        String first = recipient();
+        emailService.sendSimpleMessage(first, "Welcome", "Hello");
+        awaitStatus(first, "SENT");
+
+        long opened = connectionPool.getOpenedCount();
+        long reused = connectionPool.getReusedCount();
+        int connections = SMTP.getConnectionCount();
+
+        String second = recipient();
+        String third = recipient();
+        emailService.sendSimpleMessage(second, "Welcome", "Hello");
+        emailService.sendHtmlMessage(third, "Welcome", "<p>Hello</p>");
+        awaitStatus(second, "SENT");
+        awaitStatus(third, "SENT");
+
+        assertEquals(1, SMTP.receivedBy(first).size());
+        assertEquals(1, SMTP.receivedBy(second).size());
+        assertEquals(1, SMTP.receivedBy(third).size());
+        assertEquals(opened, connectionPool.getOpenedCount());
+        assertTrue(connectionPool.getReusedCount() > reused);
+        assertEquals(connections, SMTP.getConnectionCount());
+    }
+
+    @Test
+    void transientFailureIsRetriedAfterBackoff() {
+        String to = recipient();
+        SMTP.failNextMessages(1);
+        emailService.sendSimpleMessage(to, "Invoice", "Attached");
+        awaitStatus(to, "SENT");
+
+        Map<String, Object> row = row(to);
+        assertEquals(2, ((Number) row.get("attempts")).intValue());
+        assertNull(row.get("last_error"));
+        long waitedMs = jdbcTemplate.queryForObject(
+                "SELECT TIMESTAMPDIFF(MICROSECOND, created_at, sent_at) DIV 1000 FROM outbound_emails WHERE recipient = ?", Long.class, to);
+        assertTrue(waitedMs >= RETRY_BASE_MS, "retried after " + waitedMs + " ms");
+        assertEquals(1, SMTP.receivedBy(to).size());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        String to = recipient();
+        SMTP.failNextMessages(3);
+        emailService.sendSimpleMessage(to, "Reminder", "Still there?");
+        awaitStatus(to, "FAILED");
+
+        Map<String, Object> row = row(to);
+        assertEquals(3, ((Number) row.get("attempts")).intValue());
+        assertNotNull(row.get("last_error"));
+        assertEquals(0, SMTP.receivedBy(to).size());
+    }
+
+    @Test
+    void rejectedRecipientFailsWithoutRetry() {
+        String to = recipient();
+        SMTP.reject(to);
+        emailService.sendSimpleMessage(to, "Welcome", "Hello");
+        awaitStatus(to, "FAILED");
+
+        Map<String, Object> row = row(to);
+        assertEquals(1, ((Number) row.get("attempts")).intValue());
+        assertNotNull(row.get("last_error"));
+        assertEquals(0, SMTP.receivedBy(to).size());
+    }
+
+    @Test
+    void onlyDueRowsAndExpiredLeasesAreClaimed() {
+        LocalDateTime now = LocalDateTime.now();
+        String notYetDue = recipient();
+        String heldByLiveNode = recipient();
+        String heldByDeadNode = recipient();
+        save(notYetDue, "PENDING", now.plusHours(1), null, null);
+        save(heldByLiveNode, "SENDING", now, "live-node", now.plusHours(1));
+        save(heldByDeadNode, "SENDING", now, "dead-node", now.minusMinutes(1));
+
+        awaitStatus(heldByDeadNode, "SENT");
+        // A later send gives the dispatcher a few more passes over the other two rows
+        String later = recipient();
+        emailService.sendSimpleMessage(later, "Welcome", "Hello");
+        awaitStatus(later, "SENT");
+
+        assertEquals(1, SMTP.receivedBy(heldByDeadNode).size());
+        assertEquals("PENDING", row(notYetDue).get("status"));
+        assertEquals(0, ((Number) row(notYetDue).get("attempts")).intValue());
+        assertEquals(0, SMTP.receivedBy(notYetDue).size());
+        assertEquals("SENDING", row(heldByLiveNode).get("status"));
+        assertEquals("live-node", row(heldByLiveNode).get("claim_token"));
+        assertEquals(0, SMTP.receivedBy(heldByLiveNode).size());
+    }
+
+    @Test
+    void mailOfADeletedCampaignIsDropped() {
+        String to = recipient();
+        OutboundEmail email = new OutboundEmail();
+        email.setRecipient(to);
+        email.setSubject("Campaign");
+        email.setBody("Hello");
+        email.setPriority(1);
+        email.setCampaignId(-1L);
+        outboundEmailRepository.save(email);
+
+        await(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbound_emails WHERE recipient = ?", Integer.class, to) == 0,
+                "email to " + to + " to be dropped");
+        assertEquals(0, SMTP.receivedBy(to).size());
+    }
+
+    private void save(String to, String status, LocalDateTime nextAttemptAt, String claimToken, LocalDateTime lockedUntil) {
+        OutboundEmail email = new OutboundEmail();
+        email.setRecipient(to);
+        email.setSubject("Queued earlier");
+        email.setBody("Hello");
+        email.setStatus(status);
+        email.setNextAttemptAt(nextAttemptAt);
+        email.setClaimToken(claimToken);
+        email.setLockedUntil(lockedUntil);
+        outboundEmailRepository.save(email);
+    }
+
+    private Map<String, Object> row(String to) {
+        return jdbcTemplate.queryForMap(
+                "SELECT status, attempts, claim_token, last_error FROM outbound_emails WHERE recipient = ?", to);
+    }
+
+    private void awaitStatus(String to, String status) {
+        await(() -> status.equals(row(to).get("status")), "email to " + to + " to become " + status);
+    }
+
+    private static void await(BooleanSupplier condition, String description) {
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for " + description);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("Interrupted waiting for " + description);
+            }
+        }
+    }
+
+    private static String recipient() {
+        return "outbox-" + UUID.randomUUID() + "@example.com";
+    }
+}
@@ -0,0 +1,123 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Plain unit tests of the AES-GCM helpers and the legacy ECB reader; no Spring context or database.
+ */
+class CryptoEngineTest {
+
+    @Test
+    void sealedBytesOpenWithTheSameKeyOnly() throws GeneralSecurityException {
+        SecretKey key = CryptoEngine.newKey();
+        for (int size : new int[] {0, 1, 100, 65536}) {
+            byte[] plaintext = CryptoEngine.randomBytes(size);
+            byte[] sealed = CryptoEngine.seal(key, plaintext);
+
+            assertEquals(CryptoEngine.NONCE_LENGTH + size + 16, sealed.length);
+            assertArrayEquals(plaintext, CryptoEngine.open(key, sealed));
+            assertThrows(GeneralSecurityException.class, () -> CryptoEngine.open(CryptoEngine.newKey(), sealed));
+        }
+    }
+
+    @Test
+    void everySealUsesAFreshNonce() throws GeneralSecurityException {
+        SecretKey key = CryptoEngine.newKey();
+        byte[] plaintext = "same message".getBytes(StandardCharsets.UTF_8);
+
+        byte[] first = CryptoEngine.seal(key, plaintext);
+        byte[] second = CryptoEngine.seal(key, plaintext);
+
+        assertFalse(Arrays.equals(Arrays.copyOf(first, CryptoEngine.NONCE_LENGTH), Arrays.copyOf(second, CryptoEngine.NONCE_LENGTH)));
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void tamperedCiphertextIsRejected() throws GeneralSecurityException {
+        SecretKey key = CryptoEngine.newKey();
+        byte[] sealed = CryptoEngine.seal(key, CryptoEngine.randomBytes(100));
+
+        for (int index : new int[] {0, CryptoEngine.NONCE_LENGTH, sealed.length - 1}) {
+            byte[] tampered = sealed.clone();
+            tampered[index] ^= 1;
+            assertThrows(GeneralSecurityException.class, () -> CryptoEngine.open(key, tampered));
+        }
+    }
+
+    @Test
+    void stringsRoundTrip() throws GeneralSecurityException {
+        SecretKey key = CryptoEngine.secretKey("chat-secret");
+        String message = "Hello, Grüße 👋";
+
+        assertEquals(message, CryptoEngine.openString(key, CryptoEngine.sealString(key, message)));
+    }
+
+    @Test
+    void secretKeysAreDerivedOnceAndCached() {
+        SecretKey key = CryptoEngine.secretKey("configured-secret");
+
+        assertSame(key, CryptoEngine.secretKey("configured-secret"));
+        assertEquals(32, key.getEncoded().length);
+        assertNotEquals(key, CryptoEngine.secretKey("another-secret"));
+    }
+
+    @Test
+    void pinKeysDependOnTheSalt() {
+        byte[] salt = CryptoEngine.randomBytes(16);
+
+        assertArrayEquals(CryptoEngine.derivePinKey("1234", salt).getEncoded(),
+                CryptoEngine.derivePinKey("1234", salt).getEncoded());
+        assertFalse(Arrays.equals(CryptoEngine.derivePinKey("1234", salt).getEncoded(),
+                CryptoEngine.derivePinKey("1234", CryptoEngine.randomBytes(16)).getEncoded()));
+    }
+
+    @Test
+    void wrappedKeysUnwrapWithTheWrappingKeyOnly() throws GeneralSecurityException {
+        SecretKey dataKey = CryptoEngine.newKey();
+        SecretKey wrappingKey = CryptoEngine.newKey();
+
+        String wrapped = CryptoEngine.wrapKey(dataKey, wrappingKey);
+        SecretKey unwrapped = CryptoEngine.unwrapKey(wrapped, wrappingKey);
+
+        assertArrayEquals(dataKey.getEncoded(), unwrapped.getEncoded());
+        assertEquals("AES", unwrapped.getAlgorithm());
+        assertThrows(GeneralSecurityException.class, () -> CryptoEngine.unwrapKey(wrapped, CryptoEngine.newKey()));
+    }
+
+    @Test
+    void legacyEcbFilesStillDecryptAsAStream() throws Exception {
+        for (int size : new int[] {0, 1, 15, 16, 17, 100_000}) {
+            byte[] plaintext = CryptoEngine.randomBytes(size);
+            byte[] legacy = legacyEncrypt("4321", plaintext);
+
+            try (InputStream in = CryptoEngine.legacyEcbDecryptingStream("4321", new ByteArrayInputStream(legacy))) {
+                assertArrayEquals(plaintext, in.readAllBytes(), "size " + size);
+            }
+        }
+    }
+
+    // What CryptoUtil.encrypt wrote before files moved to SegmentedCipher
+    private static byte[] legacyEncrypt(String pin, byte[] plaintext) throws GeneralSecurityException {
+        byte[] key = Arrays.copyOf(MessageDigest.getInstance("SHA-1").digest(pin.getBytes(StandardCharsets.UTF_8)), 16);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+        return cipher.doFinal(plaintext);
+    }
+}
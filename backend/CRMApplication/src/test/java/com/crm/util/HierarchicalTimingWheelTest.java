@@ -0,0 +1,151 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plain unit tests of the timing wheel; no Spring context or database. Time is driven tick by tick, so every
+ * timeout's expiry can be checked against the exact tick it was due.
+ */
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final long LEVEL_1 = 64;
+    private static final long LEVEL_2 = 64 * 64;
+    private static final long LEVEL_3 = 64 * 64 * 64;
+
+    @Test
+    void expiresOnTheDeadlineTickAndNotBefore() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 3, 1000);
+
+        wheel.schedule("a", 1055);
+
+        // Rounded up to the next tick, so never early
+        assertTrue(wheel.advance(1059).isEmpty());
+        assertEquals(List.of("a"), items(wheel.advance(1060)));
+        assertTrue(wheel.advance(2000).isEmpty());
+    }
+
+    @Test
+    void cascadesThroughEveryLevel() {
+        long start = 0;
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 3, start);
+        long[] deltas = {1, 63, LEVEL_1, LEVEL_1 + 1, 100, LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1, 5000, LEVEL_3 - 1};
+        for (long delta : deltas) {
+            wheel.schedule("t" + delta, (start + delta) * TICK);
+        }
+
+        Map<String, Long> fired = run(wheel, start, start + LEVEL_3);
+
+        assertEquals(deltas.length, fired.size());
+        for (long delta : deltas) {
+            assertEquals(start + delta, fired.get("t" + delta), "delta " + delta);
+        }
+    }
+
+    @Test
+    void wrapsAtEveryPowerOf64() {
+        // Starts just short of a point where levels 0, 1 and 2 all wrap at once
+        long start = LEVEL_3 - 3;
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 3, start * TICK);
+        long[] deltas = {1, 2, 3, 4, 61, LEVEL_1 + 3, LEVEL_2 + 2, LEVEL_2 + 3, LEVEL_2 + 4, 3 * LEVEL_2 + 7};
+        for (long delta : deltas) {
+            wheel.schedule("t" + delta, (start + delta) * TICK);
+        }
+
+        Map<String, Long> fired = run(wheel, start, start + 4 * LEVEL_2);
+
+        assertEquals(deltas.length, fired.size());
+        for (long delta : deltas) {
+            assertEquals(start + delta, fired.get("t" + delta), "delta " + delta);
+        }
+    }
+
+    @Test
+    void refilesTheOverflowWhenTheTopWheelTurns() {
+        long start = 17;
+        // Two levels cover 4096 ticks; anything further out waits in the overflow list
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 2, start * TICK);
+        long[] deltas = {LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1, 3 * LEVEL_2 + 5, 10_000};
+        for (long delta : deltas) {
+            wheel.schedule("t" + delta, (start + delta) * TICK);
+        }
+
+        Map<String, Long> fired = run(wheel, start, start + 4 * LEVEL_2);
+
+        assertEquals(deltas.length, fired.size());
+        for (long delta : deltas) {
+            assertEquals(start + delta, fired.get("t" + delta), "delta " + delta);
+        }
+    }
+
+    @Test
+    void pastDeadlinesExpireOnTheNextAdvance() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 3, 5000);
+
+        wheel.schedule("past", 1000);
+        wheel.schedule("now", 5000);
+
+        assertEquals(List.of("past", "now"), items(wheel.advance(5000)));
+    }
+
+    @Test
+    void aLargeJumpReturnsEverythingDue() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 3, 0);
+        wheel.schedule("near", 50);
+        wheel.schedule("far", LEVEL_2 * TICK * 2);
+        wheel.schedule("later", LEVEL_2 * TICK * 3);
+
+        List<String> due = items(wheel.advance(LEVEL_2 * TICK * 2));
+
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of("near", "far")));
+        assertEquals(List.of("later"), items(wheel.advance(LEVEL_2 * TICK * 3)));
+    }
+
+    @Test
+    void cancelledTimeoutsNeverExpire() {
+        long start = 0;
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 2, start);
+        HierarchicalTimingWheel.Timeout<String> sameSlot = wheel.schedule("cancelled-low", 5 * TICK);
+        wheel.schedule("kept-low", 5 * TICK);
+        HierarchicalTimingWheel.Timeout<String> upper = wheel.schedule("cancelled-upper", 500 * TICK);
+        HierarchicalTimingWheel.Timeout<String> overflow = wheel.schedule("cancelled-overflow", 9000 * TICK);
+        HierarchicalTimingWheel.Timeout<String> past = wheel.schedule("cancelled-past", -TICK);
+
+        sameSlot.cancel();
+        upper.cancel();
+        overflow.cancel();
+        past.cancel();
+
+        Map<String, Long> fired = run(wheel, start, start + 10_000);
+
+        assertEquals(Map.of("kept-low", 5L), fired);
+        assertTrue(upper.isCancelled());
+        assertFalse(wheel.schedule("after", 10_001 * TICK).isCancelled());
+    }
+
+    // Advances one tick at a time and records the tick each item expired on
+    private static Map<String, Long> run(HierarchicalTimingWheel<String> wheel, long fromTick, long toTick) {
+        Map<String, Long> fired = new HashMap<>();
+        for (long tick = fromTick; tick <= toTick; tick++) {
+            for (HierarchicalTimingWheel.Timeout<String> timeout : wheel.advance(tick * TICK)) {
+                Long previous = fired.put(timeout.getItem(), tick);
+                assertNull(previous, timeout.getItem() + " expired twice");
+            }
+        }
+        return fired;
+    }
+
+    private static List<String> items(List<HierarchicalTimingWheel.Timeout<String>> timeouts) {
+        return timeouts.stream().map(HierarchicalTimingWheel.Timeout::getItem).toList();
+    }
+}
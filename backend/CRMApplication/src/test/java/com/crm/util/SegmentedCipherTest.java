@@ -0,0 +1,161 @@
+package com.crm.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plain unit tests of the segmented file format; no Spring context or database.
+ */
+class SegmentedCipherTest {
+
+    private static final int SEGMENT = SegmentedCipher.DEFAULT_SEGMENT_SIZE;
+    private static final int TAG = 16;
+    private static final byte[] SALT = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private final SecretKey key = CryptoEngine.newKey();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsAroundSegmentBoundaries() throws IOException {
+        for (int size : new int[] {0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 2 * SEGMENT, 3 * SEGMENT + 5}) {
+            byte[] plaintext = CryptoEngine.randomBytes(size);
+            Path file = write(encrypt(plaintext));
+
+            assertArrayEquals(plaintext, decrypt(file, key, 0), "size " + size);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                SegmentedCipher.Header header = SegmentedCipher.readHeader(channel);
+                assertEquals(size, header.plaintextLength(Files.size(file)), "size " + size);
+                assertArrayEquals(SALT, header.getSalt());
+            }
+        }
+    }
+
+    @Test
+    void readsFromAnOffsetWithoutEarlierSegments() throws IOException {
+        byte[] plaintext = CryptoEngine.randomBytes(3 * SEGMENT + 5);
+        Path file = write(encrypt(plaintext));
+
+        for (long offset : new long[] {1, SEGMENT - 1, SEGMENT, SEGMENT + 7, 3 * SEGMENT, 3 * SEGMENT + 5}) {
+            byte[] expected = Arrays.copyOfRange(plaintext, (int) offset, plaintext.length);
+            assertArrayEquals(expected, decrypt(file, key, offset), "offset " + offset);
+        }
+    }
+
+    @Test
+    void rejectsAFileTruncatedAtASegmentBoundary() throws IOException {
+        byte[] encrypted = encrypt(CryptoEngine.randomBytes(2 * SEGMENT + 10));
+        int header = headerLength(encrypted);
+        // Dropping the whole last segment leaves a file that ends cleanly, but on a segment not sealed as last
+        Path file = write(Arrays.copyOf(encrypted, header + 2 * (SEGMENT + TAG)));
+
+        assertThrows(IOException.class, () -> decrypt(file, key, 0));
+    }
+
+    @Test
+    void rejectsAFileTruncatedInsideASegment() throws IOException {
+        byte[] encrypted = encrypt(CryptoEngine.randomBytes(2 * SEGMENT + 10));
+        Path file = write(Arrays.copyOf(encrypted, encrypted.length - 5));
+
+        assertThrows(IOException.class, () -> decrypt(file, key, 0));
+    }
+
+    @Test
+    void rejectsReorderedSegments() throws IOException {
+        byte[] encrypted = encrypt(CryptoEngine.randomBytes(3 * SEGMENT));
+        int header = headerLength(encrypted);
+        int full = SEGMENT + TAG;
+        byte[] swapped = encrypted.clone();
+        System.arraycopy(encrypted, header, swapped, header + full, full);
+        System.arraycopy(encrypted, header + full, swapped, header, full);
+        Path file = write(swapped);
+
+        assertThrows(IOException.class, () -> decrypt(file, key, 0));
+        assertThrows(IOException.class, () -> decrypt(file, key, SEGMENT));
+    }
+
+    @Test
+    void rejectsATamperedHeader() throws IOException {
+        byte[] encrypted = encrypt(CryptoEngine.randomBytes(100));
+        // The header is authenticated as associated data of every segment, so a changed salt is caught
+        byte[] salt = encrypted.clone();
+        salt[11] ^= 1;
+        Path saltFile = write(salt);
+        assertThrows(IOException.class, () -> decrypt(saltFile, key, 0));
+
+        byte[] magic = encrypted.clone();
+        magic[0] = 'X';
+        Path magicFile = write(magic);
+        IOException error = assertThrows(IOException.class, () -> decrypt(magicFile, key, 0));
+        assertEquals("Not a segmented encrypted file", error.getMessage());
+    }
+
+    @Test
+    void rejectsTheWrongKey() throws IOException {
+        Path file = write(encrypt(CryptoEngine.randomBytes(100)));
+
+        assertThrows(IOException.class, () -> decrypt(file, CryptoEngine.newKey(), 0));
+    }
+
+    @Test
+    void recognisesItsMagic() throws IOException {
+        byte[] encrypted = encrypt(new byte[0]);
+        assertTrue(SegmentedCipher.hasMagic(new ByteArrayInputStream(encrypted)));
+        assertFalse(SegmentedCipher.hasMagic(new ByteArrayInputStream(new byte[] {'C', 'R', 'M'})));
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = SegmentedCipher.encrypt(bytes, key, SALT)) {
+            // Uneven writes so segment boundaries fall inside a write
+            for (int off = 0; off < plaintext.length; off += 1000) {
+                out.write(plaintext, off, Math.min(1000, plaintext.length - off));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decrypt(Path file, SecretKey key, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        SegmentedCipher.Header header;
+        try {
+            header = SegmentedCipher.readHeader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        try (InputStream in = SegmentedCipher.decrypt(channel, header, key, offset)) {
+            return in.readAllBytes();
+        }
+    }
+
+    // magic (4) | version (1) | segment size (4) | salt length (1) | salt | nonce prefix (7)
+    private static int headerLength(byte[] encrypted) {
+        return 4 + 1 + 4 + 1 + Byte.toUnsignedInt(encrypted[9]) + 7;
+    }
+
+    private Path write(byte[] data) throws IOException {
+        Path file = Files.createTempFile(dir, "segmented", ".bin");
+        Files.write(file, data);
+        return file;
+    }
+}
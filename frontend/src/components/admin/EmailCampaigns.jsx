@@ -182,6 +182,25 @@ const NoData = styled.div`
   font-size: 1.2rem;
 `;
 
+// Campaign values are put into the dialogs' HTML, so quotes and tags must not end the attribute or element
+const escapeHtml = (value) => String(value ?? '')
+  .replace(/&/g, '&amp;')
+  .replace(/</g, '&lt;')
+  .replace(/>/g, '&gt;')
+  .replace(/"/g, '&quot;');
+
+const campaignErrorMessage = (error, fallback) => {
+  switch (error.response?.status) {
+    case 400: return 'The campaign was rejected: sending needs a body and scheduling needs a date and time.';
+    case 404: return 'This campaign no longer exists.';
+    case 409: return 'This campaign is already sending or sent and can no longer be edited.';
+    default: return fallback;
+  }
+};
+
+// The backend's LocalDateTime (e.g. 2026-10-18T09:30:00) in the minute precision of a datetime-local input
+const toLocalInput = (dateString) => (dateString ? dateString.slice(0, 16) : '');
+
 const EmailCampaigns = () => {
   const [campaigns, setCampaigns] = useState([]);
   const [loading, setLoading] = useState(true);
@@ -238,6 +257,7 @@ const EmailCampaigns = () => {
       html: `
         <input id="name" class="swal2-input" placeholder="Campaign Name">
         <input id="subject" class="swal2-input" placeholder="Email Subject">
+        <textarea id="body" class="swal2-textarea" placeholder="Email body (HTML; {{username}} and {{email}} are filled in)"></textarea>
       `,
       showCancelButton: true,
       confirmButtonText: 'Create',
@@ -245,11 +265,12 @@ const EmailCampaigns = () => {
       preConfirm: () => {
         const name = Swal.getPopup().querySelector('#name').value;
         const subject = Swal.getPopup().querySelector('#subject').value;
+        const body = Swal.getPopup().querySelector('#body').value;
         if (!name || !subject) {
           Swal.showValidationMessage('Name and Subject are required');
           return false;
         }
-        return { name, subject, status: 'draft' };
+        return { name, subject, body, status: 'draft' };
       }
     }).then(async (result) => {
       if (result.isConfirmed) {
@@ -258,7 +279,7 @@ const EmailCampaigns = () => {
           Swal.fire('Success', 'Campaign created as a draft.', 'success');
           fetchCampaigns();
         } catch (error) {
-          Swal.fire('Error', 'Failed to create campaign.', 'error');
+          Swal.fire('Error', campaignErrorMessage(error, 'Failed to create campaign.'), 'error');
         }
       }
     });
@@ -268,21 +289,36 @@ const EmailCampaigns = () => {
     Swal.fire({
       title: 'Edit Campaign',
       html: `
-        <input id="name" class="swal2-input" value="${campaign.name}" placeholder="Campaign Name">
-        <input id="subject" class="swal2-input" value="${campaign.subject}" placeholder="Email Subject">
+        <input id="name" class="swal2-input" value="${escapeHtml(campaign.name)}" placeholder="Campaign Name">
+        <input id="subject" class="swal2-input" value="${escapeHtml(campaign.subject)}" placeholder="Email Subject">
+        <textarea id="body" class="swal2-textarea" placeholder="Email body (HTML; {{username}} and {{email}} are filled in)">${escapeHtml(campaign.body)}</textarea>
         <select id="status" class="swal2-select">
             <option value="draft" ${campaign.status === 'draft' ? 'selected' : ''}>Draft</option>
             <option value="scheduled" ${campaign.status === 'scheduled' ? 'selected' : ''}>Scheduled</option>
             <option value="sent" ${campaign.status === 'sent' ? 'selected' : ''}>Sent</option>
         </select>
+        <input id="scheduledAt" type="datetime-local" class="swal2-input" value="${toLocalInput(campaign.scheduledAt)}">
       `,
       showCancelButton: true,
       confirmButtonText: 'Save Changes',
-      preConfirm: () => ({
-        name: Swal.getPopup().querySelector('#name').value,
-        subject: Swal.getPopup().querySelector('#subject').value,
-        status: Swal.getPopup().querySelector('#status').value,
-      })
+      preConfirm: () => {
+        const values = {
+          name: Swal.getPopup().querySelector('#name').value,
+          subject: Swal.getPopup().querySelector('#subject').value,
+          body: Swal.getPopup().querySelector('#body').value,
+          status: Swal.getPopup().querySelector('#status').value,
+          scheduledAt: Swal.getPopup().querySelector('#scheduledAt').value || null,
+        };
+        if (values.status === 'sent' && !values.body.trim()) {
+          Swal.showValidationMessage('A campaign needs a body before it can be sent');
+          return false;
+        }
+        if (values.status === 'scheduled' && !values.scheduledAt) {
+          Swal.showValidationMessage('Pick the date and time to send a scheduled campaign');
+          return false;
+        }
+        return values;
+      }
     }).then(async (result) => {
       if (result.isConfirmed) {
         try {
@@ -290,7 +326,7 @@ const EmailCampaigns = () => {
           Swal.fire('Updated!', 'Campaign has been updated.', 'success');
           fetchCampaigns();
         } catch (error) {
-          Swal.fire('Error!', 'Failed to update campaign.', 'error');
+          Swal.fire('Error!', campaignErrorMessage(error, 'Failed to update campaign.'), 'error');
         }
       }
     });
@@ -311,7 +347,7 @@ const EmailCampaigns = () => {
           Swal.fire('Deleted!', 'The campaign has been deleted.', 'success');
           fetchCampaigns();
         } catch (error) {
-          Swal.fire('Error!', 'Failed to delete campaign.', 'error');
+          Swal.fire('Error!', campaignErrorMessage(error, 'Failed to delete campaign.'), 'error');
         }
       }
     });
@@ -184,18 +184,19 @@ const CustomerAnalytics = () => {
   return (
     <AnalyticsContainer>
       <PageTitle>Analytics Dashboard</PageTitle>
+      {analyticsData.partial && <p>Some figures are temporarily unavailable. Please refresh in a moment.</p>}
       
       <StatsGrid>
         <StatCard>
-          <StatValue>{analyticsData.totalInteractions}</StatValue>
+          <StatValue>{analyticsData.totalInteractions ?? '—'}</StatValue>
           <StatLabel>Total Interactions</StatLabel>
         </StatCard>
         <StatCard>
-          <StatValue>{analyticsData.submittedCampaignsCount}</StatValue>
+          <StatValue>{analyticsData.submittedCampaignsCount ?? '—'}</StatValue>
           <StatLabel>Submitted Campaigns</StatLabel>
         </StatCard>
         <StatCard>
-          <StatValue>{analyticsData.approvedCampaignsCount}</StatValue>
+          <StatValue>{analyticsData.approvedCampaignsCount ?? '—'}</StatValue>
           <StatLabel>Approved Campaigns</StatLabel>
         </StatCard>
       </StatsGrid>
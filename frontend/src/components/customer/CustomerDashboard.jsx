@@ -1,12 +1,15 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { Routes, Route, Link, useNavigate, useLocation } from 'react-router-dom';
 import styled from 'styled-components';
 import { FontAwesomeIcon } from '@fortawesome/react-fontawesome';
 import { 
   faUser, faChartLine, faComments, faPaperPlane,
   faEnvelopeOpenText, faCalendarAlt, faShieldHalved, faMessage,
-  faBars, faSignOutAlt 
+  faBars, faSignOutAlt, faBell
 } from '@fortawesome/free-solid-svg-icons';
+import SockJS from 'sockjs-client';
+import { Stomp } from '@stomp/stompjs';
+import api from '../../api';
 
 // Import all components
 import CustomerProfile from './CustomerProfile';
@@ -17,6 +20,7 @@ import CustomerEmails from './CustomerEmails';
 import InteractionCalendar from './InteractionCalendar';
 import SecureFileSafe from './SecureFileSafe';
 import Chat from './Chat';
+import Notifications from './Notifications';
 import Swal from 'sweetalert2';
 
 const DashboardContainer = styled.div`
@@ -123,6 +127,17 @@ const LogoutButton = styled.button`
       white-space: nowrap;
     }
 `;
+const UnreadBadge = styled.span`
+  margin-left: auto;
+  min-width: 20px;
+  padding: 2px 6px;
+  border-radius: 10px;
+  background-color: #e74c3c;
+  color: white;
+  font-size: 0.75rem;
+  font-weight: bold;
+  text-align: center;
+`;
 const Content = styled.div`
   flex: 1;
   margin-left: ${({ $sidebarWidth }) => $sidebarWidth};
@@ -133,8 +148,12 @@ const Content = styled.div`
 const CustomerDashboard = () => {
   const [isOpen, setIsOpen] = useState(true);
   const [activeLink, setActiveLink] = useState('profile');
+  const [unreadCount, setUnreadCount] = useState(0);
+  const [incomingNotifications, setIncomingNotifications] = useState([]);
+  const stompClient = useRef(null);
   const navigate = useNavigate();
   const location = useLocation();
+  const userId = sessionStorage.getItem('userId');
 
   useEffect(() => {
     const path = location.pathname.split('/')[2] || 'profile';
@@ -150,6 +169,44 @@ const CustomerDashboard = () => {
     return () => window.removeEventListener('resize', handleResize);
   }, []);
 
+  // Notifications are pushed as they are created, so the unread count is fetched once rather than polled
+  useEffect(() => {
+    const fetchUnreadCount = async () => {
+      try {
+        const response = await api.get(`/customers/${userId}/notifications/unread-count`);
+        setUnreadCount(response.data.unread);
+      } catch (error) {
+        console.error('Error fetching unread notification count:', error);
+      }
+    };
+    fetchUnreadCount();
+
+    const socket = new SockJS(`${import.meta.env.VITE_APP_API_URL.replace('/api', '')}/ws`);
+    stompClient.current = Stomp.over(() => socket);
+    stompClient.current.reconnect_delay = 5000;
+    stompClient.current.connect({}, () => {
+      stompClient.current.subscribe(`/user/${userId}/queue/notifications`, (message) => {
+        const notification = JSON.parse(message.body);
+        setIncomingNotifications(prev => [notification, ...prev]);
+        setUnreadCount(prev => prev + 1);
+        Swal.fire({
+          toast: true,
+          position: 'top-end',
+          icon: 'info',
+          title: notification.message,
+          showConfirmButton: false,
+          timer: 3000
+        });
+      });
+    });
+
+    return () => {
+      if (stompClient.current?.connected) {
+        stompClient.current.disconnect();
+      }
+    };
+  }, [userId]);
+
   const toggleSidebar = () => setIsOpen(!isOpen);
 
   const handleLogout = () => {
@@ -224,6 +281,13 @@ const CustomerDashboard = () => {
               <span className="text">Email Campaigns</span>
             </MenuLink>
           </MenuItem>
+          <MenuItem>
+            <MenuLink to="/customer/notifications" $isOpen={isOpen} className={activeLink === 'notifications' ? 'active' : ''}>
+              <FontAwesomeIcon icon={faBell} className="icon" />
+              <span className="text">Notifications</span>
+              {unreadCount > 0 && <UnreadBadge>{unreadCount}</UnreadBadge>}
+            </MenuLink>
+          </MenuItem>
           <MenuItem>
             <MenuLink to="/customer/my-campaigns" $isOpen={isOpen} className={activeLink === 'my-campaigns' ? 'active' : ''}>
               <FontAwesomeIcon icon={faPaperPlane} className="icon" />
@@ -249,6 +313,7 @@ const CustomerDashboard = () => {
           <Route path="/chat" element={<Chat />} />
           <Route path="/email-campaigns" element={<CustomerEmails />} />
           <Route path="/my-campaigns" element={<MyCampaigns />} />
+          <Route path="/notifications" element={<Notifications incoming={incomingNotifications} onUnreadChange={setUnreadCount} />} />
         </Routes>
       </Content>
     </DashboardContainer>
@@ -0,0 +1,252 @@
+// src/components/customer/Notifications.jsx
+import React, { useState, useEffect, useCallback } from 'react';
+import styled from 'styled-components';
+import { FontAwesomeIcon } from '@fortawesome/react-fontawesome';
+import { faBell, faCheck, faCheckDouble } from '@fortawesome/free-solid-svg-icons';
+import api from '../../api';
+import Swal from 'sweetalert2';
+
+const PAGE_SIZE = 20;
+
+const NotificationsContainer = styled.div`
+  padding: 20px;
+`;
+
+const PageTitle = styled.h1`
+  margin-bottom: 30px;
+  color: #333;
+  font-size: 2rem;
+  border-bottom: 2px solid #4a90e2;
+  padding-bottom: 10px;
+`;
+
+const Controls = styled.div`
+  display: flex;
+  justify-content: flex-end;
+  margin-bottom: 20px;
+`;
+
+const Button = styled.button`
+  display: flex;
+  align-items: center;
+  gap: 8px;
+  padding: 10px 15px;
+  background-color: #4a90e2;
+  color: white;
+  border: none;
+  border-radius: 5px;
+  font-size: 1rem;
+  cursor: pointer;
+  transition: background-color 0.3s ease;
+  &:hover:not(:disabled) { background-color: #357abd; }
+  &:disabled { cursor: not-allowed; opacity: 0.5; }
+`;
+
+const NotificationList = styled.ul`
+  list-style: none;
+  padding: 0;
+  margin: 0;
+  background-color: white;
+  border-radius: 10px;
+  box-shadow: 0 5px 15px rgba(0, 0, 0, 0.05);
+  overflow: hidden;
+`;
+
+const NotificationItem = styled.li`
+  display: flex;
+  align-items: center;
+  gap: 15px;
+  padding: 15px 20px;
+  border-bottom: 1px solid #eee;
+  background-color: ${({ $read }) => ($read ? 'white' : 'rgba(74, 144, 226, 0.08)')};
+  &:last-child { border-bottom: none; }
+  .icon {
+    color: ${({ $read }) => ($read ? '#aaa' : '#4a90e2')};
+  }
+`;
+
+const NotificationText = styled.div`
+  flex: 1;
+  color: #333;
+  font-weight: ${({ $read }) => ($read ? 'normal' : 'bold')};
+  .time {
+    display: block;
+    margin-top: 4px;
+    color: #888;
+    font-size: 0.85rem;
+    font-weight: normal;
+  }
+`;
+
+const MarkReadButton = styled.button`
+  padding: 6px 10px;
+  background: none;
+  border: 1px solid #4a90e2;
+  border-radius: 5px;
+  color: #4a90e2;
+  cursor: pointer;
+  &:hover { background-color: rgba(74, 144, 226, 0.1); }
+`;
+
+const LoadMore = styled.div`
+  display: flex;
+  justify-content: center;
+  margin-top: 20px;
+`;
+
+const LoadingSpinner = styled.div`
+  display: flex;
+  justify-content: center;
+  align-items: center;
+  height: 200px;
+  .spinner {
+    border: 4px solid rgba(0, 0, 0, 0.1);
+    border-radius: 50%;
+    border-top: 4px solid #4a90e2;
+    width: 40px;
+    height: 40px;
+    animation: spin 1s linear infinite;
+  }
+  @keyframes spin { 0% { transform: rotate(0deg); } 100% { transform: rotate(360deg); } }
+`;
+
+const NoData = styled.div`
+  text-align: center;
+  padding: 50px;
+  color: #666;
+  font-size: 1.2rem;
+  background-color: white;
+  border-radius: 10px;
+  box-shadow: 0 5px 15px rgba(0, 0, 0, 0.05);
+`;
+
+// Pages through the keyset feed; notifications pushed while the page is open arrive through `incoming`
+const Notifications = ({ incoming = [], onUnreadChange }) => {
+  const userId = sessionStorage.getItem('userId');
+  const [notifications, setNotifications] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [hasMore, setHasMore] = useState(false);
+  const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
+
+  const fetchPage = useCallback(async (cursor) => {
+    const response = await api.get(`/customers/${userId}/notifications`, {
+      params: { size: PAGE_SIZE, ...(cursor ? { cursor } : {}) }
+    });
+    setNextCursor(response.data.nextCursor);
+    setHasMore(response.data.hasMore);
+    return response.data.content || [];
+  }, [userId]);
+
+  useEffect(() => {
+    const fetchFirstPage = async () => {
+      setLoading(true);
+      try {
+        setNotifications(await fetchPage(null));
+      } catch (error) {
+        console.error('Error fetching notifications:', error);
+        Swal.fire('Error', 'Failed to load notifications.', 'error');
+      } finally {
+        setLoading(false);
+      }
+    };
+    fetchFirstPage();
+  }, [fetchPage]);
+
+  // Pushed notifications go on top; the first page may already hold the ones that arrived while it loaded
+  useEffect(() => {
+    if (incoming.length === 0) return;
+    setNotifications(prev => {
+      const known = new Set(prev.map(n => n.id));
+      const fresh = incoming.filter(n => !known.has(n.id));
+      return fresh.length > 0 ? [...fresh, ...prev] : prev;
+    });
+  }, [incoming]);
+
+  const handleLoadMore = async () => {
+    setLoadingMore(true);
+    try {
+      const page = await fetchPage(nextCursor);
+      setNotifications(prev => {
+        const known = new Set(prev.map(n => n.id));
+        return [...prev, ...page.filter(n => !known.has(n.id))];
+      });
+    } catch (error) {
+      const message = error.response?.status === 400
+        ? 'The list is out of date. Please reload the page.'
+        : 'Failed to load more notifications.';
+      Swal.fire('Error', message, 'error');
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  // Without ids every unread notification is marked, including ones on pages not loaded yet
+  const markRead = async (ids) => {
+    try {
+      const response = await api.put(`/customers/${userId}/notifications/read`, ids ? { ids } : {});
+      const marked = ids ? new Set(ids) : null;
+      setNotifications(prev => prev.map(n => (!marked || marked.has(n.id) ? { ...n, read: true } : n)));
+      if (onUnreadChange) onUnreadChange(response.data.unread);
+    } catch (error) {
+      Swal.fire('Error', 'Failed to mark notifications as read.', 'error');
+    }
+  };
+
+  const formatDate = (dateString) => {
+    if (!dateString) return '';
+    return new Date(dateString).toLocaleString();
+  };
+
+  if (loading) {
+    return (
+      <NotificationsContainer>
+        <PageTitle>Notifications</PageTitle>
+        <LoadingSpinner><div className="spinner"></div></LoadingSpinner>
+      </NotificationsContainer>
+    );
+  }
+
+  return (
+    <NotificationsContainer>
+      <PageTitle>Notifications</PageTitle>
+      <Controls>
+        <Button onClick={() => markRead(null)} disabled={!notifications.some(n => !n.read)}>
+          <FontAwesomeIcon icon={faCheckDouble} /> Mark all as read
+        </Button>
+      </Controls>
+
+      {notifications.length > 0 ? (
+        <>
+          <NotificationList>
+            {notifications.map(notification => (
+              <NotificationItem key={notification.id} $read={notification.read}>
+                <FontAwesomeIcon icon={faBell} className="icon" />
+                <NotificationText $read={notification.read}>
+                  {notification.message}
+                  <span className="time">{formatDate(notification.createdAt)}</span>
+                </NotificationText>
+                {!notification.read && (
+                  <MarkReadButton onClick={() => markRead([notification.id])} title="Mark as read">
+                    <FontAwesomeIcon icon={faCheck} />
+                  </MarkReadButton>
+                )}
+              </NotificationItem>
+            ))}
+          </NotificationList>
+          {hasMore && (
+            <LoadMore>
+              <Button onClick={handleLoadMore} disabled={loadingMore}>
+                {loadingMore ? 'Loading...' : 'Load more'}
+              </Button>
+            </LoadMore>
+          )}
+        </>
+      ) : (
+        <NoData>You have no notifications.</NoData>
+      )}
+    </NotificationsContainer>
+  );
+};
+
+export default Notifications;